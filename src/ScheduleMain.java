@@ -1,22 +1,98 @@
 import backtracker.*;
 import scheduling.*;
+import service.BatchSolver;
+import service.PortfolioSolver;
+import service.ScheduleServer;
 import viewer.BacktrackingViewer;
+import viewer.TraceRecorder;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Optional;
+import javax.management.JMException;
 
 /**
  * The main program for job scheduling. <br>
  * <br>
  * It is run on the command line with four arguments:<br>
  * <br>
- * <tt>$ java ScheduleMain filename time_limit number_machines true/false </tt>
+ * <tt>$ java ScheduleMain filename time_limit number_machines true/false </tt><br>
+ * <br>
+ * An optional fifth argument selects the solver mode:<br>
+ * <tt>sequential</tt> (the default), <tt>parallel</tt>, <tt>optimize</tt>,
+ * which finds the schedule with the smallest makespan within the time limit,
+ * starting from the best heuristic schedule as a bound,
+ * <tt>incremental</tt>, which searches a single schedule changed in place
+ * and skips configurations it has already seen fail, <tt>ready</tt>, which
+ * does the same but may assign any job whose in-neighbors are assigned
+ * next, the most constrained first, <tt>heuristic</tt>,
+ * which only runs the list scheduling heuristics, <tt>improve</tt>,
+ * which improves the best heuristic schedule by local search, seeded by
+ * an optional sixth argument (the search runs for a fixed time on every
+ * processor, so the same seed need not give the same schedule), or
+ * <tt>portfolio</tt>, which races several searches for the shortest
+ * schedule and stops at the first proven answer.<br>
+ * <br>
+ * The debug argument is <tt>false</tt>, <tt>true</tt> to log every step of
+ * the search, <tt>every=N</tt> to log one step in N, or <tt>milestones</tt>
+ * to log only goals and backtracks. The log is written in the background.<br>
+ * <br>
+ * <tt>$ java ScheduleMain -batch manifest [output [threads]]</tt><br>
+ * <br>
+ * solves every combination listed in a manifest instead; see BatchSolver.<br>
+ * <tt>$ java ScheduleMain -serve [port]</tt><br>
+ * <br>
+ * answers scheduling requests over HTTP; see ScheduleServer.<br>
+ * <tt>$ java ScheduleMain -convert graph-file binary-file</tt><br>
+ * <br>
+ * writes a graph in the binary form, which every mode also reads and
+ * loads much faster; see BinaryGraph.
  *
  */
 
 public class ScheduleMain {
-    public static void main(String[] args) {
-        if (args.length != 4) {
-            System.err.println("Usage: java ScheduleMain graph-file timeLimit #-machines debug");
+    /*
+     * Depth below which the parallel solver stops splitting subtrees
+     */
+    private static final int PARALLEL_DEPTH = 8;
+
+    /*
+     * Most failed configurations the incremental solver remembers
+     */
+    private static final int TABLE_CAPACITY = 1 << 20;
+
+    /*
+     * How long the local search improves the heuristic schedule, in milliseconds
+     */
+    private static final long IMPROVE_MILLIS = 2000;
+
+    /*
+     * Seed of the local search unless one is given, so runs do not depend on the clock
+     */
+    private static final long IMPROVE_SEED = 0;
+
+    /*
+     * Longest the portfolio races before taking the best schedule found, in milliseconds
+     */
+    private static final long PORTFOLIO_MILLIS = 30_000;
+
+    private static final String USAGE =
+            "Usage: java ScheduleMain graph-file timeLimit #-machines debug [mode | improve seed]";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("-batch")) {
+            BatchSolver.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("-serve")) {
+            ScheduleServer.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("-convert")) {
+            BinaryGraph.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length < 4 || args.length > 6 || args.length == 6 && !args[4].equals("improve")) {
+            System.err.println(USAGE);
         } else {
 
 
@@ -24,14 +100,114 @@ public class ScheduleMain {
 
             Graph analysis = new Graph(args[0]);
 
-            JobSchedulingConfig init = new JobSchedulingConfig(analysis.getJobs(), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            JobSchedulingConfig init;
+            try {
+                init = new JobSchedulingConfig(analysis, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            } catch (IllegalArgumentException ex) {
+                // a number that is not one, or more machines than cost columns
+                System.err.println(USAGE);
+                System.err.println(ex.getMessage());
+                System.exit(1);
+                return;
+            }
 
             init.displayJobsAssignmentOrder();
 
-            Backtracker bt = new Backtracker(args[3].equals("true"));
+            String mode = args.length >= 5 ? args[4] : "sequential";
 
+            SearchMetrics metrics = new SearchMetrics(analysis.getJobs().size() + 1);
+            try {
+                metrics.register(args[0]);
+            } catch (JMException ex) {
+                System.err.println("Search metrics not visible through JMX: " + ex);
+            }
 
-            Optional<Configuration> sol = bt.solve(init);
+            boolean debug = !args[3].equals("false");
+            DebugLog log = null;
+            Optional<?> sol;
+            if (mode.equals("parallel")) {
+                if (debug) {
+                    // the workers record no steps, so there would be nothing to show
+                    System.err.println("Debug output is not available in parallel mode; ignoring it.");
+                    debug = false;
+                }
+                ParallelBacktracker pbt = new ParallelBacktracker(PARALLEL_DEPTH,
+                        Runtime.getRuntime().availableProcessors(), metrics);
+                sol = pbt.solve(init);
+                pbt.shutdown();
+            } else if (mode.equals("heuristic")) {
+                CompiledGraph compiled = analysis.compile();
+                Schedule best = null;
+                for (ListScheduler.Heuristic heuristic : ListScheduler.Heuristic.values()) {
+                    long started = System.nanoTime();
+                    Schedule schedule = ListScheduler.schedule(compiled, Integer.parseInt(args[2]), heuristic);
+                    System.out.printf("%-13s makespan %d in %.3f ms%n", heuristic,
+                            schedule.getMakespan(), (System.nanoTime() - started) / 1e6);
+                    if (best == null || schedule.getMakespan() < best.getMakespan()) {
+                        best = schedule;
+                    }
+                }
+                sol = best.getMakespan() <= Integer.parseInt(args[1]) ? Optional.of(best) : Optional.empty();
+            } else if (mode.equals("improve")) {
+                Schedule heuristic = ListScheduler.best(analysis.compile(), Integer.parseInt(args[2]));
+                System.out.println("Heuristic makespan: " + heuristic.getMakespan() + " (" + heuristic.getHeuristic() + ")");
+                long seed = args.length == 6 ? Long.parseLong(args[5]) : IMPROVE_SEED;
+                Schedule improved = LocalSearch.improve(heuristic, IMPROVE_MILLIS,
+                        Runtime.getRuntime().availableProcessors(), seed);
+                System.out.println("Improved makespan: " + improved.getMakespan());
+                sol = improved.getMakespan() <= Integer.parseInt(args[1]) ? Optional.of(improved) : Optional.empty();
+            } else if (mode.equals("optimize")) {
+                if (debug) {
+                    startTrace(init.getJobNames(), init.getMachineCount());
+                    log = startLog(args[3], init.getJobNames());
+                }
+                Schedule heuristic = ListScheduler.best(analysis.compile(), Integer.parseInt(args[2]));
+                boolean feasible = heuristic.getMakespan() <= Integer.parseInt(args[1]);
+                System.out.println("Heuristic bound: " + heuristic.getMakespan() + " (" + heuristic.getHeuristic() + ")");
+                Backtracker bt = log != null ? new Backtracker(log, metrics) : new Backtracker(false, metrics);
+                // only schedules strictly better than the heuristic's are searched for
+                sol = bt.solveOptimal(init, feasible ? heuristic.getMakespan() : Integer.MAX_VALUE);
+                if (!sol.isPresent() && feasible) {
+                    sol = Optional.of(heuristic);
+                }
+            } else if (mode.equals("incremental")) {
+                IncrementalSchedule schedule = new IncrementalSchedule(analysis.compile(), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                if (debug) {
+                    startTrace(schedule.getJobNames(), schedule.getMachineCount());
+                    log = startLog(args[3], schedule.getJobNames());
+                }
+                Backtracker bt = log != null ? new Backtracker(log, metrics) : new Backtracker(false, metrics);
+                TranspositionTable failed = new TranspositionTable(TABLE_CAPACITY);
+                sol = bt.solveInPlaceIterative(schedule, failed) ? Optional.of(schedule) : Optional.empty();
+                System.out.println(failed);
+            } else if (mode.equals("portfolio")) {
+                PortfolioSolver portfolio = new PortfolioSolver(analysis.compile(), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        metrics);
+                PortfolioSolver.Outcome outcome = portfolio.solve(PORTFOLIO_MILLIS);
+                System.out.println("Portfolio: " + outcome);
+                sol = Optional.ofNullable(outcome.getSchedule());
+            } else if (mode.equals("ready")) {
+                ReadySetSchedule schedule = new ReadySetSchedule(analysis.compile(), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        JobOrdering.Standard.MOST_CONSTRAINED, MachineOrdering.Standard.EARLIEST_FINISH);
+                if (debug) {
+                    startTrace(schedule.getJobNames(), schedule.getMachineCount());
+                    log = startLog(args[3], schedule.getJobNames());
+                }
+                Backtracker bt = log != null ? new Backtracker(log, metrics) : new Backtracker(false, metrics);
+                TranspositionTable failed = new TranspositionTable(TABLE_CAPACITY);
+                sol = bt.solveInPlaceIterative(schedule, failed) ? Optional.of(schedule) : Optional.empty();
+                System.out.println(failed);
+            } else {
+                if (debug) {
+                    startTrace(init.getJobNames(), init.getMachineCount());
+                    log = startLog(args[3], init.getJobNames());
+                }
+                Backtracker bt = log != null ? new Backtracker(log, metrics) : new Backtracker(false, metrics);
+                sol = bt.solveIterative(init);
+            }
+            if (log != null) {
+                log.close();
+            }
 
             System.out.println("Elapsed time: " +
                     (System.currentTimeMillis() - start)/1000.0 + " seconds.");
@@ -41,9 +217,65 @@ public class ScheduleMain {
             } else {
                 System.out.println("No solution!");
             }
-            if(args[3].equals("true")) {
-                BacktrackingViewer.launchViewer();
+            if (!mode.equals("heuristic") && !mode.equals("improve")) {
+                // those modes do not search, so there is nothing to count
+                System.out.println(metrics.summary());
+            }
+            if(debug) {
+                BacktrackingViewer.launchViewer(true);
+            }
+        }
+    }
+
+    /**
+     * Start the background log of a debug run.
+     *
+     * @param spec the debug argument: true, every=N or milestones
+     * @param jobNames the job names, by the numbers the configurations use
+     * @return the log, writing to standard output
+     */
+    private static DebugLog startLog(String spec, String[] jobNames) {
+        WritableByteChannel out = Channels.newChannel(System.out);
+        if (spec.equals("milestones")) {
+            return new DebugLog(out, jobNames, 1, true);
+        } else if (spec.startsWith("every=")) {
+            return new DebugLog(out, jobNames, Integer.parseInt(spec.substring(6)), false);
+        }
+        return new DebugLog(out, jobNames);
+    }
+
+    /**
+     * Record the steps of a debug run in a trace on disk, rather than
+     * keeping every configuration in memory for the viewer. The trace is
+     * deleted when the program exits, after the viewer is closed.
+     *
+     * @param jobNames the job names, by the numbers the configurations use
+     * @param machines the number of machines
+     */
+    private static void startTrace(String[] jobNames, int machines) {
+        try {
+            Path directory = Files.createTempDirectory("backtracking-trace");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> delete(directory)));
+            BacktrackingViewer.startTrace(new TraceRecorder(directory, jobNames, machines));
+            System.out.println("Recording trace in " + directory);
+        } catch (IOException ex) {
+            System.err.println("Cannot record a trace, keeping it in memory: " + ex);
+        }
+    }
+
+    /**
+     * Delete a trace directory and the files in it.
+     *
+     * @param directory the trace directory
+     */
+    private static void delete(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
             }
+            Files.deleteIfExists(directory);
+        } catch (IOException ex) {
+            System.err.println("Cannot delete the trace in " + directory + ": " + ex);
         }
     }
 }
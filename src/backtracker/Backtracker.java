@@ -1,4 +1,6 @@
 package backtracker;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Optional;
 import viewer.*;
 /**
@@ -10,36 +12,216 @@ import viewer.*;
  * @author jeh (James Heliotis @ RIT CS)
  */
 public class Backtracker {
+    /*
+     * Configurations looked at between checks for cancellation
+     */
+    private static final int CHECK_INTERVAL = 4096;
+
+    /*
+     * Depth the iterative searches' stacks start with; they grow as needed
+     */
+    private static final int INITIAL_DEPTH = 64;
+
+    /*
+     * What arriving at an in-place configuration came to
+     */
+    private static final int GOAL = 0;
+    private static final int KNOWN_FAILURE = 1;
+    private static final int EXPANDED = 2;
+
     /*
      * Should debug output be enabled?
      */
     private boolean debug;
 
+    /*
+     * Where the search is counted, or null
+     */
+    private SearchMetrics metrics;
+
+    /*
+     * Where debug output goes in the background, or null to print it
+     */
+    private DebugLog log;
+
+    /*
+     * The limits of the current search
+     */
+    private SolveLimits limits = SolveLimits.NONE;
+
+    /*
+     * Configurations expanded by the current search, and since the clock
+     * was last read
+     */
+    private long nodes;
+    private int sinceCheck;
+
+    /*
+     * The deepest configuration the current copying search reached
+     */
+    private Configuration deepest;
+    private int deepestDepth;
+
+    /**
+     * A level of the iterative search: a configuration and how far the
+     * search has gone through its successors
+     */
+    private static class Frame {
+        Configuration config;
+        Iterator<Configuration> successors;
+
+        void clear() {
+            config = null;
+            successors = null;
+        }
+    }
+
+    /*
+     * The stack of the iterative search, reused from one search to the next
+     */
+    private Frame[] frames = new Frame[INITIAL_DEPTH];
+
+    /*
+     * The stack of the iterative in-place search: at each depth, the
+     * number of branches, the next one to try, and the configuration's key
+     */
+    private int[] branchCount = new int[INITIAL_DEPTH];
+    private int[] nextBranch = new int[INITIAL_DEPTH];
+    private long[] stateKeys = new long[INITIAL_DEPTH];
+
+    /*
+     * The cheapest goal found so far by solveOptimal, and its cost
+     */
+    private BoundedConfiguration best;
+    private int bestCost;
+
     /**
      * Initialize a new backtracker
      *
      * @param debug Is debugging output enabled?
      */
     public Backtracker(boolean debug) {
+        this(debug, null);
+    }
+
+    /**
+     * Initialize a new backtracker that counts what its searches do
+     *
+     * @param debug Is debugging output enabled?
+     * @param metrics Where to count the searches, or null
+     */
+    public Backtracker(boolean debug, SearchMetrics metrics) {
         this.debug = debug;
+        this.metrics = metrics;
         if (this.debug) {
             System.out.println("Backtracker debugging enabled...");
         }
     }
 
+    /**
+     * Initialize a new backtracker whose debug output is written in the
+     * background by a log, which also gets backtrack events
+     *
+     * @param log Where debug output goes
+     * @param metrics Where to count the searches, or null
+     */
+    public Backtracker(DebugLog log, SearchMetrics metrics) {
+        this(true, metrics);
+        this.log = log;
+    }
+
+    /**
+     * Thrown through a search to stop it; carries no stack trace, since it
+     * is not an error.
+     */
+    private static class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final SolveResult.StopReason reason;
+
+        Stop(SolveResult.StopReason reason) {
+            super(reason.name(), null, false, false);
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Start counting a search against its limits.
+     */
+    private void begin(SolveLimits limits) {
+        this.limits = limits;
+        this.nodes = 0;
+        this.sinceCheck = 0;
+        this.deepest = null;
+        this.deepestDepth = -1;
+    }
+
+    /**
+     * Count a configuration, and give up if a limit is reached. The budget
+     * is checked every time; the clock, the token and the thread's
+     * interrupt flag only every CHECK_INTERVAL configurations.
+     */
+    private void checkLimits() {
+        if (++nodes > limits.getNodeBudget()) {
+            throw new Stop(SolveResult.StopReason.NODE_BUDGET);
+        }
+        if (++sinceCheck < CHECK_INTERVAL) {
+            return;
+        }
+        sinceCheck = 0;
+        CancellationToken token = limits.getToken();
+        if (token != null && token.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new Stop(SolveResult.StopReason.CANCELLED);
+        }
+        if (limits.hasDeadline() && System.nanoTime() - limits.getDeadline() > 0) {
+            throw new Stop(SolveResult.StopReason.DEADLINE);
+        }
+    }
+
     /**
      * A utility routine for printing out various debug messages.
      *
-     * @param msg The type of config being looked at (current, goal,
+     * @param kind The type of config being looked at (current, goal,
      *  successor, e.g.)
      * @param config The config to display
+     * @param depth The depth of the config
      */
-    private void debugPrint(String msg, Configuration config) {
-        if (this.debug) {
-            System.out.println(msg + ": " + config);
-            BacktrackingViewer.addBacktrackingData(new BacktrackingData(config,
-                    config.isValid(), config.isGoal()));
+    private void debugPrint(DebugLog.Kind kind, Configuration config, int depth) {
+        if (this.debug && output(kind, config, depth)) {
+            BacktrackingViewer.addBacktrackingData(depth, config,
+                    config.isValid(), config.isGoal());
+        }
+    }
+
+    /**
+     * A utility routine for printing out debug messages about a
+     * configuration that is changed in place. The viewer only gets it if
+     * it can be traced, since a reference to it would soon be stale.
+     *
+     * @param kind The type of config being looked at
+     * @param config The config to display
+     * @param depth The depth of the config
+     */
+    private void debugPrint(DebugLog.Kind kind, UndoableConfiguration config, int depth) {
+        if (this.debug && output(kind, config, depth) && config instanceof Traceable) {
+            BacktrackingViewer.addBacktrackingData(depth, config,
+                    config.isValid(), config.isGoal());
+        }
+    }
+
+    /**
+     * Print a debug message, or hand it to the log.
+     *
+     * @return true if the viewer should get the config too; backtracks
+     *  only go to the log, since the viewer already has the config
+     */
+    private boolean output(DebugLog.Kind kind, Object config, int depth) {
+        if (this.log != null) {
+            this.log.log(kind, config, depth);
+        } else if (kind != DebugLog.Kind.BACKTRACK) {
+            System.out.println(kind.label + ": " + config);
         }
+        return kind != DebugLog.Kind.BACKTRACK;
     }
 
     /**
@@ -49,26 +231,501 @@ public class Backtracker {
      * @return A solution config, or null if no solution
      */
     public Optional<Configuration> solve(Configuration config) {
-        debugPrint("Current config", config);
+        return solve(config, SolveLimits.NONE).getSolution();
+    }
+
+    /**
+     * Try find a solution, giving up when a limit is reached.
+     *
+     * @param config A valid configuration
+     * @param limits When to give up
+     * @return The solution if one was found, why the search stopped, and
+     *  the deepest configuration reached if it stopped early
+     */
+    public SolveResult<Configuration> solve(Configuration config, SolveLimits limits) {
+        begin(limits);
+        try {
+            Optional<Configuration> sol = solve(config, 0);
+            return new SolveResult<>(sol.isPresent() ? SolveResult.StopReason.SOLVED
+                    : SolveResult.StopReason.EXHAUSTED, sol.orElse(null), null, nodes);
+        } catch (Stop stop) {
+            return new SolveResult<>(stop.reason, null, deepest, nodes);
+        }
+    }
+
+    /**
+     * Try find a solution below a configuration at a given depth.
+     */
+    private Optional<Configuration> solve(Configuration config, int depth) {
+        checkLimits();
+        if (depth > deepestDepth) {
+            deepest = config;
+            deepestDepth = depth;
+        }
+        debugPrint(DebugLog.Kind.CURRENT, config, depth);
         if (config.isGoal()) {
-            debugPrint("\tGoal config", config);
+            debugPrint(DebugLog.Kind.GOAL, config, depth);
+            if (metrics != null) {
+                metrics.goal(depth);
+            }
             return Optional.of(config);
         } else {
+            if (metrics != null) {
+                metrics.expanded(depth);
+            }
             for (Configuration child : config.getSuccessors()) {
                 if (child.isValid()) {
-                    debugPrint("\tValid successor", child);
-                    Optional<Configuration> sol = solve(child);
+                    debugPrint(DebugLog.Kind.VALID, child, depth + 1);
+                    if (metrics != null) {
+                        metrics.valid();
+                    }
+                    Optional<Configuration> sol = solve(child, depth + 1);
                     if (sol.isPresent()) {
                         return sol;
                     }
                 } else {
-                    debugPrint("\tInvalid successor", child);
+                    debugPrint(DebugLog.Kind.INVALID, child, depth + 1);
+                    if (metrics != null) {
+                        metrics.invalid();
+                    }
                 }
             }
             // implicit backtracking happens here
+            debugPrint(DebugLog.Kind.BACKTRACK, config, depth);
+            if (metrics != null) {
+                metrics.backtrack(depth);
+            }
         }
         return Optional.empty();
     }
 
-}
+    /**
+     * Find the cheapest goal reachable from a given configuration using
+     * branch and bound.
+     *
+     * @param config A valid configuration
+     * @return The cheapest solution config, or empty if no solution
+     */
+    public Optional<Configuration> solveOptimal(BoundedConfiguration config) {
+        return solveOptimal(config, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find a goal cheaper than a given bound, and the cheapest one if
+     * there are several, using branch and bound. Subtrees whose lower
+     * bound is not below the cheapest cost seen so far are pruned.
+     *
+     * @param config A valid configuration
+     * @param bound Only goals costing strictly less than this are wanted
+     * @return The cheapest solution config under the bound, or empty
+     */
+    public Optional<Configuration> solveOptimal(BoundedConfiguration config, int bound) {
+        return solveOptimal(config, bound, SolveLimits.NONE).getSolution();
+    }
+
+    /**
+     * Find the cheapest goal under a bound, giving up when a limit is
+     * reached. A search that gives up still returns the cheapest goal it
+     * found, which is feasible but need not be optimal.
+     *
+     * @param config A valid configuration
+     * @param bound Only goals costing strictly less than this are wanted
+     * @param limits When to give up
+     * @return The cheapest goal found, why the search stopped, and the
+     *  deepest configuration reached if it stopped early
+     */
+    public SolveResult<Configuration> solveOptimal(BoundedConfiguration config, int bound, SolveLimits limits) {
+        begin(limits);
+        this.best = null;
+        this.bestCost = bound;
+        try {
+            branchAndBound(config, 0);
+            return new SolveResult<>(best != null ? SolveResult.StopReason.SOLVED
+                    : SolveResult.StopReason.EXHAUSTED, best, null, nodes);
+        } catch (Stop stop) {
+            return new SolveResult<>(stop.reason, best, deepest, nodes);
+        }
+    }
+
+    /**
+     * Explore the subtree rooted at a configuration, keeping the cheapest
+     * goal found.
+     *
+     * @param config A valid configuration
+     */
+    private void branchAndBound(BoundedConfiguration config, int depth) {
+        checkLimits();
+        if (depth > deepestDepth) {
+            deepest = config;
+            deepestDepth = depth;
+        }
+        debugPrint(DebugLog.Kind.CURRENT, config, depth);
+        if (config.isGoal()) {
+            debugPrint(DebugLog.Kind.GOAL, config, depth);
+            if (metrics != null) {
+                metrics.goal(depth);
+            }
+            if (config.getCost() < this.bestCost) {
+                this.best = config;
+                this.bestCost = config.getCost();
+            }
+        } else {
+            if (metrics != null) {
+                metrics.expanded(depth);
+            }
+            for (Configuration successor : config.getSuccessors()) {
+                BoundedConfiguration child = (BoundedConfiguration) successor;
+                if (!child.isValid()) {
+                    debugPrint(DebugLog.Kind.INVALID, child, depth + 1);
+                    if (metrics != null) {
+                        metrics.invalid();
+                    }
+                } else if (child.getLowerBound() >= this.bestCost) {
+                    debugPrint(DebugLog.Kind.PRUNED, child, depth + 1);
+                    if (metrics != null) {
+                        metrics.pruned();
+                    }
+                } else {
+                    debugPrint(DebugLog.Kind.VALID, child, depth + 1);
+                    if (metrics != null) {
+                        metrics.valid();
+                    }
+                    branchAndBound(child, depth + 1);
+                }
+            }
+            debugPrint(DebugLog.Kind.BACKTRACK, config, depth);
+            if (metrics != null) {
+                metrics.backtrack(depth);
+            }
+        }
+    }
+
+    /**
+     * Try find a solution, if one exists, by changing a configuration in
+     * place. When a solution is found the configuration is left in it;
+     * otherwise it is back where it started.
+     *
+     * @param config A valid configuration
+     * @return true if the configuration now holds a solution
+     */
+    public boolean solveInPlace(UndoableConfiguration config) {
+        return solveInPlace(config, null);
+    }
+
+    /**
+     * Try find a solution, if one exists, by changing a configuration in
+     * place, skipping configurations already known to lead nowhere.
+     * Every configuration whose subtree fails is added to the table.
+     *
+     * @param config A valid configuration
+     * @param failed Keys of failed configurations, or null to keep none;
+     *  only meaningful for searches of the same problem
+     * @return true if the configuration now holds a solution
+     */
+    public boolean solveInPlace(UndoableConfiguration config, TranspositionTable failed) {
+        return solveInPlace(config, failed, SolveLimits.NONE).getSolution().isPresent();
+    }
+
+    /**
+     * Try find a solution by changing a configuration in place, giving up
+     * when a limit is reached. A search that gives up leaves the
+     * configuration where it stopped, and returns a snapshot of it.
+     *
+     * @param config A valid configuration
+     * @param failed Keys of failed configurations, or null to keep none
+     * @param limits When to give up
+     * @return The configuration itself if it now holds a solution, why the
+     *  search stopped, and a snapshot of where it stopped if it stopped early
+     */
+    public SolveResult<UndoableConfiguration> solveInPlace(UndoableConfiguration config,
+                                                           TranspositionTable failed, SolveLimits limits) {
+        begin(limits);
+        try {
+            boolean solved = solveInPlace(config, failed, 0);
+            return new SolveResult<>(solved ? SolveResult.StopReason.SOLVED
+                    : SolveResult.StopReason.EXHAUSTED, solved ? config : null, null, nodes);
+        } catch (Stop stop) {
+            return new SolveResult<>(stop.reason, null, config.snapshot(), nodes);
+        }
+    }
+
+    /**
+     * Try find a solution in place below a configuration at a given depth.
+     */
+    private boolean solveInPlace(UndoableConfiguration config, TranspositionTable failed, int depth) {
+        checkLimits();
+        debugPrint(DebugLog.Kind.CURRENT, config, depth);
+        if (config.isGoal()) {
+            debugPrint(DebugLog.Kind.GOAL, config, depth);
+            if (metrics != null) {
+                metrics.goal(depth);
+            }
+            return true;
+        }
+        long key = 0;
+        if (failed != null) {
+            key = config.getStateKey();
+            if (failed.contains(key)) {
+                debugPrint(DebugLog.Kind.KNOWN_FAILURE, config, depth);
+                if (metrics != null) {
+                    metrics.backtrack(depth);
+                }
+                return false;
+            }
+        }
+        if (metrics != null) {
+            metrics.expanded(depth);
+        }
+        int branches = config.getBranchCount();
+        for (int branch = 0; branch < branches; branch++) {
+            config.apply(branch);
+            if (config.isValid()) {
+                debugPrint(DebugLog.Kind.VALID, config, depth + 1);
+                if (metrics != null) {
+                    metrics.valid();
+                }
+                if (solveInPlace(config, failed, depth + 1)) {
+                    return true;
+                }
+            } else {
+                debugPrint(DebugLog.Kind.INVALID, config, depth + 1);
+                if (metrics != null) {
+                    metrics.invalid();
+                }
+            }
+            config.undo();
+        }
+        if (failed != null) {
+            failed.add(key);
+        }
+        debugPrint(DebugLog.Kind.BACKTRACK, config, depth);
+        if (metrics != null) {
+            metrics.backtrack(depth);
+        }
+        return false;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration,
+     * without recursing. It looks at the same configurations in the same
+     * order as solve(), so it finds the same solution, but keeps the
+     * search path in an explicit stack of frames, so the depth of the
+     * search is not limited by the thread's stack. The frames are reused
+     * by later searches.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     */
+    public Optional<Configuration> solveIterative(Configuration config) {
+        return solveIterative(config, SolveLimits.NONE).getSolution();
+    }
 
+    /**
+     * Try find a solution without recursing, giving up when a limit is
+     * reached.
+     *
+     * @param config A valid configuration
+     * @param limits When to give up
+     * @return The solution if one was found, why the search stopped, and
+     *  the deepest configuration reached if it stopped early
+     * @see #solveIterative(Configuration)
+     */
+    public SolveResult<Configuration> solveIterative(Configuration config, SolveLimits limits) {
+        begin(limits);
+        int top = 0;
+        try {
+            if (enter(config, 0)) {
+                return new SolveResult<>(SolveResult.StopReason.SOLVED, config, null, nodes);
+            }
+            top = 1;
+            while (top > 0) {
+                Frame frame = frames[top - 1];
+                if (frame.successors.hasNext()) {
+                    Configuration child = frame.successors.next();
+                    if (child.isValid()) {
+                        debugPrint(DebugLog.Kind.VALID, child, top);
+                        if (metrics != null) {
+                            metrics.valid();
+                        }
+                        if (enter(child, top)) {
+                            return new SolveResult<>(SolveResult.StopReason.SOLVED, child, null, nodes);
+                        }
+                        top++;
+                    } else {
+                        debugPrint(DebugLog.Kind.INVALID, child, top);
+                        if (metrics != null) {
+                            metrics.invalid();
+                        }
+                    }
+                } else {
+                    debugPrint(DebugLog.Kind.BACKTRACK, frame.config, top - 1);
+                    if (metrics != null) {
+                        metrics.backtrack(top - 1);
+                    }
+                    frame.clear();
+                    top--;
+                }
+            }
+            return new SolveResult<>(SolveResult.StopReason.EXHAUSTED, null, null, nodes);
+        } catch (Stop stop) {
+            return new SolveResult<>(stop.reason, null, deepest, nodes);
+        } finally {
+            for (int i = 0; i < top; i++) {
+                frames[i].clear();
+            }
+        }
+    }
+
+    /**
+     * Arrive at a configuration: print it, and either report it as a
+     * goal or push a frame to go through its successors.
+     *
+     * @return true if the configuration is a goal
+     */
+    private boolean enter(Configuration config, int depth) {
+        checkLimits();
+        if (depth > deepestDepth) {
+            deepest = config;
+            deepestDepth = depth;
+        }
+        debugPrint(DebugLog.Kind.CURRENT, config, depth);
+        if (config.isGoal()) {
+            debugPrint(DebugLog.Kind.GOAL, config, depth);
+            if (metrics != null) {
+                metrics.goal(depth);
+            }
+            return true;
+        }
+        if (metrics != null) {
+            metrics.expanded(depth);
+        }
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        if (frames[depth] == null) {
+            frames[depth] = new Frame();
+        }
+        frames[depth].config = config;
+        frames[depth].successors = config.getSuccessors().iterator();
+        return false;
+    }
+
+    /**
+     * Try find a solution by changing a configuration in place, without
+     * recursing. It applies the same branches in the same order as
+     * solveInPlace(), so it finds the same solution, but keeps the branch
+     * being tried at each depth in arrays, so the depth of the search is
+     * not limited by the thread's stack.
+     *
+     * @param config A valid configuration
+     * @param failed Keys of failed configurations, or null to keep none
+     * @return true if the configuration now holds a solution
+     */
+    public boolean solveInPlaceIterative(UndoableConfiguration config, TranspositionTable failed) {
+        return solveInPlaceIterative(config, failed, SolveLimits.NONE).getSolution().isPresent();
+    }
+
+    /**
+     * Try find a solution by changing a configuration in place, without
+     * recursing, giving up when a limit is reached.
+     *
+     * @param config A valid configuration
+     * @param failed Keys of failed configurations, or null to keep none
+     * @param limits When to give up
+     * @return The configuration itself if it now holds a solution, why the
+     *  search stopped, and a snapshot of where it stopped if it stopped early
+     * @see #solveInPlaceIterative(UndoableConfiguration, TranspositionTable)
+     */
+    public SolveResult<UndoableConfiguration> solveInPlaceIterative(UndoableConfiguration config,
+                                                                    TranspositionTable failed, SolveLimits limits) {
+        begin(limits);
+        try {
+            int entered = enter(config, failed, 0);
+            if (entered == GOAL) {
+                return new SolveResult<>(SolveResult.StopReason.SOLVED, config, null, nodes);
+            }
+            int top = entered == EXPANDED ? 1 : 0;
+            while (top > 0) {
+                int depth = top - 1;
+                if (nextBranch[depth] < branchCount[depth]) {
+                    config.apply(nextBranch[depth]++);
+                    if (config.isValid()) {
+                        debugPrint(DebugLog.Kind.VALID, config, top);
+                        if (metrics != null) {
+                            metrics.valid();
+                        }
+                        entered = enter(config, failed, top);
+                        if (entered == GOAL) {
+                            return new SolveResult<>(SolveResult.StopReason.SOLVED, config, null, nodes);
+                        } else if (entered == EXPANDED) {
+                            top++;
+                            continue;
+                        }
+                    } else {
+                        debugPrint(DebugLog.Kind.INVALID, config, top);
+                        if (metrics != null) {
+                            metrics.invalid();
+                        }
+                    }
+                    config.undo();
+                } else {
+                    if (failed != null) {
+                        failed.add(stateKeys[depth]);
+                    }
+                    debugPrint(DebugLog.Kind.BACKTRACK, config, depth);
+                    if (metrics != null) {
+                        metrics.backtrack(depth);
+                    }
+                    top--;
+                    if (top > 0) {
+                        config.undo();
+                    }
+                }
+            }
+            return new SolveResult<>(SolveResult.StopReason.EXHAUSTED, null, null, nodes);
+        } catch (Stop stop) {
+            return new SolveResult<>(stop.reason, null, config.snapshot(), nodes);
+        }
+    }
+
+    /**
+     * Arrive at an in-place configuration: print it, and either report it
+     * as a goal or a known failure, or count its branches.
+     *
+     * @return GOAL, KNOWN_FAILURE or EXPANDED
+     */
+    private int enter(UndoableConfiguration config, TranspositionTable failed, int depth) {
+        checkLimits();
+        debugPrint(DebugLog.Kind.CURRENT, config, depth);
+        if (config.isGoal()) {
+            debugPrint(DebugLog.Kind.GOAL, config, depth);
+            if (metrics != null) {
+                metrics.goal(depth);
+            }
+            return GOAL;
+        }
+        long key = 0;
+        if (failed != null) {
+            key = config.getStateKey();
+            if (failed.contains(key)) {
+                debugPrint(DebugLog.Kind.KNOWN_FAILURE, config, depth);
+                if (metrics != null) {
+                    metrics.backtrack(depth);
+                }
+                return KNOWN_FAILURE;
+            }
+        }
+        if (metrics != null) {
+            metrics.expanded(depth);
+        }
+        if (depth == branchCount.length) {
+            branchCount = Arrays.copyOf(branchCount, depth * 2);
+            nextBranch = Arrays.copyOf(nextBranch, depth * 2);
+            stateKeys = Arrays.copyOf(stateKeys, depth * 2);
+        }
+        stateKeys[depth] = key;
+        branchCount[depth] = config.getBranchCount();
+        nextBranch[depth] = 0;
+        return EXPANDED;
+    }
+}
@@ -0,0 +1,23 @@
+package backtracker;
+
+/**
+ * A configuration of an optimization problem. On top of the usual
+ * backtracking routines it can tell the cost of a goal and a lower
+ * bound on the cost of every goal reachable from it, which lets the
+ * Backtracker prune subtrees that cannot beat the best goal so far.
+ */
+public interface BoundedConfiguration extends Configuration {
+    /**
+     * The cost of this configuration, meaningful once it is a goal.
+     *
+     * @return the cost; lower is better
+     */
+    public int getCost();
+
+    /**
+     * A value no goal reachable from this configuration can beat.
+     *
+     * @return a lower bound on the cost of any goal below this one
+     */
+    public int getLowerBound();
+}
@@ -0,0 +1,23 @@
+package backtracker;
+
+/**
+ * A flag another thread can raise to make a search give up. Searches
+ * look at it every few thousand configurations.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Ask the searches watching this token to stop.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true once cancel() was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
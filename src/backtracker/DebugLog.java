@@ -0,0 +1,288 @@
+package backtracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import viewer.Traceable;
+
+/**
+ * The debug output of a search, written by a background thread so that
+ * the search thread only pays for storing a few numbers per event. Events
+ * go into a ring buffer with a single producer, the search thread, and a
+ * single consumer, the writer thread, which turns them into text and
+ * writes them to a channel in batches.<br>
+ * <br>
+ * An event about a configuration that is changed in place is stored by
+ * value, through Traceable; any other configuration is stored by reference
+ * and printed later, so it must not change once it has been logged.<br>
+ * <br>
+ * Events may be sampled: every Nth one is kept, or only goals and
+ * backtracks are. Goals are always kept.
+ */
+public class DebugLog implements AutoCloseable {
+    /** What happened to a configuration */
+    public enum Kind {
+        CURRENT("Current config"),
+        GOAL("\tGoal config"),
+        VALID("\tValid successor"),
+        INVALID("\tInvalid successor"),
+        PRUNED("\tPruned successor"),
+        KNOWN_FAILURE("\tKnown failure"),
+        BACKTRACK("\tBacktrack");
+
+        final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    /*
+     * Number of events the ring buffer holds; a power of two
+     */
+    private static final int CAPACITY = 1 << 14;
+
+    /*
+     * Size of the output buffer, and so of the largest batch written at once
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+     * How long the writer sleeps when there is nothing to write
+     */
+    private static final long IDLE_NANOS = 200_000;
+
+    /*
+     * The events, in parallel arrays indexed by sequence number modulo CAPACITY
+     */
+    private final byte[] kinds = new byte[CAPACITY];
+    private final int[] depths = new int[CAPACITY];
+    private final int[] jobs = new int[CAPACITY];
+    private final int[] machines = new int[CAPACITY];
+    private final int[] finishes = new int[CAPACITY];
+    private final Object[] configs = new Object[CAPACITY];
+
+    /*
+     * Sequence number of the next event to be added, and of the next one
+     * to be written. Each is only advanced by one thread.
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /*
+     * Keep one event in this many; 1 keeps them all
+     */
+    private final int sampleEvery;
+
+    /*
+     * Keep only goals and backtracks
+     */
+    private final boolean milestonesOnly;
+
+    /*
+     * Events offered so far, for sampling; only touched by the search thread
+     */
+    private long offered;
+
+    private final WritableByteChannel channel;
+    private final String[] jobNames;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private long written;
+
+    /**
+     * Start logging every event.
+     *
+     * @param channel where the text goes; not closed by the log
+     * @param jobNames the job names by number, for configurations logged
+     *  by value, or null to print the numbers
+     */
+    public DebugLog(WritableByteChannel channel, String[] jobNames) {
+        this(channel, jobNames, 1, false);
+    }
+
+    /**
+     * Start logging a sample of the events.
+     *
+     * @param channel where the text goes; not closed by the log
+     * @param jobNames the job names by number, for configurations logged
+     *  by value, or null to print the numbers
+     * @param sampleEvery keep one event in this many
+     * @param milestonesOnly keep only goals and backtracks
+     */
+    public DebugLog(WritableByteChannel channel, String[] jobNames,
+                    int sampleEvery, boolean milestonesOnly) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be at least 1: " + sampleEvery);
+        }
+        this.channel = channel;
+        this.jobNames = jobNames;
+        this.sampleEvery = sampleEvery;
+        this.milestonesOnly = milestonesOnly;
+        this.writer = new Thread(this::drain, "debug-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Log an event about a configuration. A configuration changed in place
+     * must be Traceable, or only its depth is kept.
+     *
+     * @param kind what happened
+     * @param config the configuration
+     * @param depth its depth
+     */
+    public void log(Kind kind, Object config, int depth) {
+        if (!sampled(kind)) {
+            return;
+        }
+        long sequence = head.get();
+        while (sequence - tail.get() >= CAPACITY) {
+            // the writer is behind; wait for it rather than lose events
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        int slot = (int) sequence & (CAPACITY - 1);
+        kinds[slot] = (byte) kind.ordinal();
+        depths[slot] = depth;
+        if (config instanceof UndoableConfiguration) {
+            if (config instanceof Traceable) {
+                Traceable step = (Traceable) config;
+                jobs[slot] = step.getLastJob();
+                machines[slot] = step.getLastMachine();
+                finishes[slot] = step.getLastFinishTime();
+            } else {
+                jobs[slot] = -1;
+            }
+            configs[slot] = null;
+        } else {
+            configs[slot] = config;
+        }
+        // publishes the slot to the writer
+        head.lazySet(sequence + 1);
+    }
+
+    /**
+     * Should an event of a kind be kept?
+     */
+    private boolean sampled(Kind kind) {
+        if (kind == Kind.GOAL) {
+            return true;
+        }
+        if (milestonesOnly) {
+            return kind == Kind.BACKTRACK;
+        }
+        return sampleEvery == 1 || offered++ % sampleEvery == 0;
+    }
+
+    /**
+     * The writer thread: format and write events until the log is closed
+     * and everything logged has been written.
+     */
+    private void drain() {
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        StringBuilder text = new StringBuilder();
+        try {
+            while (true) {
+                boolean done = closed;
+                long end = head.get();
+                long sequence = tail.get();
+                if (sequence == end) {
+                    if (done) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+                for (; sequence < end; sequence++) {
+                    format(text, (int) sequence & (CAPACITY - 1));
+                    if (text.length() >= BUFFER_SIZE / 4) {
+                        write(encoder, text, out);
+                    }
+                }
+                // the slots may be reused once their text is taken
+                tail.lazySet(end);
+                write(encoder, text, out);
+                flush(out);
+            }
+        } catch (IOException ex) {
+            failure = ex;
+            tail.set(Long.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * Append the line of one event.
+     */
+    private void format(StringBuilder text, int slot) {
+        text.append(Kind.values()[kinds[slot]].label).append(": ");
+        Object config = configs[slot];
+        if (config != null) {
+            text.append(config);
+            configs[slot] = null;
+        } else if (jobs[slot] >= 0) {
+            int job = jobs[slot];
+            text.append(jobNames != null ? jobNames[job] : String.valueOf(job))
+                    .append(" on machine ").append(machines[slot])
+                    .append(" finishing at ").append(finishes[slot]);
+        } else {
+            text.append("depth ").append(depths[slot]);
+        }
+        text.append(System.lineSeparator());
+        written++;
+    }
+
+    /**
+     * Encode the text into the buffer, writing the buffer whenever it fills.
+     */
+    private void write(CharsetEncoder encoder, StringBuilder text, ByteBuffer out) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (encoder.encode(chars, out, true).isOverflow()) {
+            flush(out);
+        }
+        encoder.reset();
+        text.setLength(0);
+    }
+
+    private void flush(ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * @return number of events written so far
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Write everything logged so far and stop the writer thread.
+     *
+     * @throws UncheckedIOException if the channel could not be written
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+}
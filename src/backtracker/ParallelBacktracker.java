@@ -0,0 +1,178 @@
+package backtracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A parallel version of the backtracking algorithm. The subtrees rooted
+ * at the successors of a configuration are handed to a fork/join pool,
+ * whose idle workers steal them from busy ones. Below a given depth a
+ * worker stops splitting and searches its subtree with plain recursion.
+ * As soon as one worker reaches a goal, all the others give up.
+ *
+ * Configurations must not share mutable state with their successors,
+ * since sibling subtrees are explored on different threads.
+ */
+public class ParallelBacktracker {
+    /*
+     * Depth at which workers stop forking and recurse sequentially
+     */
+    private int sequentialDepth;
+
+    /*
+     * The pool the search runs in
+     */
+    private ForkJoinPool pool;
+
+    /*
+     * Where the search is counted, or null
+     */
+    private SearchMetrics metrics;
+
+    /**
+     * Initialize a new parallel backtracker using all available processors
+     *
+     * @param sequentialDepth Depth at which subtrees are no longer split
+     */
+    public ParallelBacktracker(int sequentialDepth) {
+        this(sequentialDepth, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initialize a new parallel backtracker
+     *
+     * @param sequentialDepth Depth at which subtrees are no longer split
+     * @param parallelism Number of worker threads
+     */
+    public ParallelBacktracker(int sequentialDepth, int parallelism) {
+        this(sequentialDepth, parallelism, null);
+    }
+
+    /**
+     * Initialize a new parallel backtracker that counts what its searches do
+     *
+     * @param sequentialDepth Depth at which subtrees are no longer split
+     * @param parallelism Number of worker threads
+     * @param metrics Where to count the searches, or null
+     */
+    public ParallelBacktracker(int sequentialDepth, int parallelism, SearchMetrics metrics) {
+        this.sequentialDepth = sequentialDepth;
+        this.pool = new ForkJoinPool(parallelism);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     */
+    public Optional<Configuration> solve(Configuration config) {
+        AtomicReference<Configuration> solution = new AtomicReference<>();
+        pool.invoke(new Search(config, 0, solution));
+        return Optional.ofNullable(solution.get());
+    }
+
+    /**
+     * Release the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * The search of the subtree rooted at one configuration.
+     */
+    private class Search extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration config;
+        private final int depth;
+        private final AtomicReference<Configuration> solution;
+
+        Search(Configuration config, int depth,
+               AtomicReference<Configuration> solution) {
+            this.config = config;
+            this.depth = depth;
+            this.solution = solution;
+        }
+
+        @Override
+        protected void compute() {
+            if (solution.get() != null) {
+                return;
+            }
+            if (depth >= sequentialDepth) {
+                sequential(config, depth);
+            } else if (config.isGoal()) {
+                if (metrics != null) {
+                    metrics.goal(depth);
+                }
+                solution.compareAndSet(null, config);
+            } else {
+                if (metrics != null) {
+                    metrics.expanded(depth);
+                }
+                List<Search> tasks = new ArrayList<>();
+                for (Configuration child : config.getSuccessors()) {
+                    if (child.isValid()) {
+                        count(true);
+                        tasks.add(new Search(child, depth + 1, solution));
+                    } else {
+                        count(false);
+                    }
+                }
+                invokeAll(tasks);
+                if (metrics != null && solution.get() == null) {
+                    metrics.backtrack(depth);
+                }
+            }
+        }
+
+        private void count(boolean valid) {
+            if (metrics != null) {
+                if (valid) {
+                    metrics.valid();
+                } else {
+                    metrics.invalid();
+                }
+            }
+        }
+
+        /**
+         * The classic recursion, abandoned once any worker found a goal.
+         *
+         * @return true if the search should stop
+         */
+        private boolean sequential(Configuration config, int depth) {
+            if (solution.get() != null) {
+                return true;
+            }
+            if (config.isGoal()) {
+                if (metrics != null) {
+                    metrics.goal(depth);
+                }
+                solution.compareAndSet(null, config);
+                return true;
+            }
+            if (metrics != null) {
+                metrics.expanded(depth);
+            }
+            for (Configuration child : config.getSuccessors()) {
+                boolean valid = child.isValid();
+                count(valid);
+                if (valid && sequential(child, depth + 1)) {
+                    return true;
+                }
+            }
+            if (metrics != null) {
+                metrics.backtrack(depth);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package backtracker;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters describing a search: how many configurations were expanded,
+ * how their successors fared, how deep the search went and where it
+ * backtracked. The counters are striped, so searches on several threads
+ * can share one instance without contending, and cost next to nothing
+ * compared with printing every configuration.
+ */
+public class SearchMetrics implements SearchMetricsMBean {
+    private final LongAdder nodesExpanded = new LongAdder();
+    private final LongAdder validSuccessors = new LongAdder();
+    private final LongAdder invalidSuccessors = new LongAdder();
+    private final LongAdder prunedSuccessors = new LongAdder();
+    private final LongAdder goals = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray backtracks;
+
+    /**
+     * Create metrics with a backtrack counter for each of the first
+     * depths; backtracks from deeper levels are counted in the last one.
+     *
+     * @param depths number of depth levels to tell apart
+     */
+    public SearchMetrics(int depths) {
+        this.backtracks = new AtomicLongArray(Math.max(1, depths));
+    }
+
+    /**
+     * Record that a configuration's successors were generated.
+     *
+     * @param depth the configuration's depth
+     */
+    public void expanded(int depth) {
+        nodesExpanded.increment();
+        maxDepth.accumulate(depth);
+    }
+
+    /** Record a valid successor */
+    public void valid() {
+        validSuccessors.increment();
+    }
+
+    /** Record an invalid successor */
+    public void invalid() {
+        invalidSuccessors.increment();
+    }
+
+    /** Record a valid successor skipped because of a bound */
+    public void pruned() {
+        prunedSuccessors.increment();
+    }
+
+    /**
+     * Record a goal.
+     *
+     * @param depth the goal's depth
+     */
+    public void goal(int depth) {
+        goals.increment();
+        maxDepth.accumulate(depth);
+    }
+
+    /**
+     * Record a configuration that led to no solution.
+     *
+     * @param depth the configuration's depth
+     */
+    public void backtrack(int depth) {
+        backtracks.incrementAndGet(Math.min(depth, backtracks.length() - 1));
+    }
+
+    @Override
+    public long getNodesExpanded() {
+        return nodesExpanded.sum();
+    }
+
+    @Override
+    public long getValidSuccessors() {
+        return validSuccessors.sum();
+    }
+
+    @Override
+    public long getInvalidSuccessors() {
+        return invalidSuccessors.sum();
+    }
+
+    @Override
+    public long getPrunedSuccessors() {
+        return prunedSuccessors.sum();
+    }
+
+    @Override
+    public long getGoals() {
+        return goals.sum();
+    }
+
+    @Override
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public long[] getBacktracksByDepth() {
+        long[] counts = new long[backtracks.length()];
+        for (int d = 0; d < counts.length; d++) {
+            counts[d] = backtracks.get(d);
+        }
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        nodesExpanded.reset();
+        validSuccessors.reset();
+        invalidSuccessors.reset();
+        prunedSuccessors.reset();
+        goals.reset();
+        maxDepth.reset();
+        for (int d = 0; d < backtracks.length(); d++) {
+            backtracks.set(d, 0);
+        }
+    }
+
+    /**
+     * Make these metrics visible through the platform MBean server,
+     * e.g. to jconsole, under backtracker:type=SearchMetrics,name=...
+     *
+     * @param name distinguishes this search from others in the same JVM
+     * @throws JMException if the name is taken or invalid
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("backtracker:type=SearchMetrics,name=" + ObjectName.quote(name)));
+    }
+
+    /**
+     * @return a summary of the counters, for the end of a run
+     */
+    public String summary() {
+        StringBuilder result = new StringBuilder();
+        result.append("Nodes expanded: ").append(getNodesExpanded())
+                .append("\nValid successors: ").append(getValidSuccessors())
+                .append("\nInvalid successors: ").append(getInvalidSuccessors())
+                .append("\nPruned successors: ").append(getPrunedSuccessors())
+                .append("\nGoals: ").append(getGoals())
+                .append("\nMax depth: ").append(getMaxDepth())
+                .append("\nBacktracks by depth:");
+        long[] counts = getBacktracksByDepth();
+        int last = counts.length - 1;
+        while (last > 0 && counts[last] == 0) {
+            last--;
+        }
+        for (int d = 0; d <= last; d++) {
+            result.append(' ').append(counts[d]);
+        }
+        return result.toString();
+    }
+}
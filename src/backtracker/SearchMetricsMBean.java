@@ -0,0 +1,31 @@
+package backtracker;
+
+/**
+ * The management interface of SearchMetrics, for watching a search
+ * through JMX while it runs.
+ */
+public interface SearchMetricsMBean {
+    /** @return configurations whose successors were generated */
+    public long getNodesExpanded();
+
+    /** @return successors that were valid */
+    public long getValidSuccessors();
+
+    /** @return successors that were invalid */
+    public long getInvalidSuccessors();
+
+    /** @return valid successors skipped because of a bound */
+    public long getPrunedSuccessors();
+
+    /** @return goals reached */
+    public long getGoals();
+
+    /** @return deepest configuration reached */
+    public long getMaxDepth();
+
+    /** @return backtracks out of each depth; the last entry also counts deeper ones */
+    public long[] getBacktracksByDepth();
+
+    /** Set every counter back to zero */
+    public void reset();
+}
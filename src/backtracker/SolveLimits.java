@@ -0,0 +1,85 @@
+package backtracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When a search should give up before it is done: at a deadline, after
+ * expanding a number of configurations, or when a token is cancelled.
+ * Limits are immutable; each with method returns new limits.
+ */
+public class SolveLimits {
+    /** No limits: searches run to the end */
+    public static final SolveLimits NONE = new SolveLimits(false, 0, Long.MAX_VALUE, null);
+
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final long nodeBudget;
+    private final CancellationToken token;
+
+    private SolveLimits(boolean hasDeadline, long deadline, long nodeBudget, CancellationToken token) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+        this.nodeBudget = nodeBudget;
+        this.token = token;
+    }
+
+    /**
+     * @param deadline a System.nanoTime() value after which to give up
+     * @return these limits with a deadline
+     */
+    public SolveLimits withDeadline(long deadline) {
+        return new SolveLimits(true, deadline, nodeBudget, token);
+    }
+
+    /**
+     * @param millis how long from now to give up
+     * @return these limits with a deadline
+     */
+    public SolveLimits withTimeout(long millis) {
+        return withDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * @param nodes how many configurations to expand at most
+     * @return these limits with a node budget
+     */
+    public SolveLimits withNodeBudget(long nodes) {
+        return new SolveLimits(hasDeadline, deadline, nodes, token);
+    }
+
+    /**
+     * @param token a token whose cancellation stops the search
+     * @return these limits with a cancellation token
+     */
+    public SolveLimits withToken(CancellationToken token) {
+        return new SolveLimits(hasDeadline, deadline, nodeBudget, token);
+    }
+
+    /**
+     * @return true if there is a deadline
+     */
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * @return the deadline, a System.nanoTime() value; meaningless without one
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return the most configurations to expand, Long.MAX_VALUE if unlimited
+     */
+    public long getNodeBudget() {
+        return nodeBudget;
+    }
+
+    /**
+     * @return the cancellation token, or null
+     */
+    public CancellationToken getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,89 @@
+package backtracker;
+
+import java.util.Optional;
+
+/**
+ * What a search with limits came to: the solution if one was found, why
+ * the search stopped, and, when it stopped early, the furthest it got.
+ *
+ * @param <C> the kind of configuration searched
+ */
+public class SolveResult<C> {
+    /** Why a search stopped */
+    public enum StopReason {
+        /** A goal was found; for an optimizing search, the best one */
+        SOLVED,
+        /** The whole search space was searched and holds no solution */
+        EXHAUSTED,
+        /** The deadline passed */
+        DEADLINE,
+        /** The node budget was spent */
+        NODE_BUDGET,
+        /** The token was cancelled or the thread interrupted */
+        CANCELLED
+    }
+
+    private final StopReason reason;
+    private final C solution;
+    private final C partial;
+    private final long nodes;
+
+    /**
+     * @param reason why the search stopped
+     * @param solution the goal found, or null
+     * @param partial the furthest the search got, or null
+     * @param nodes the configurations expanded
+     */
+    public SolveResult(StopReason reason, C solution, C partial, long nodes) {
+        this.reason = reason;
+        this.solution = solution;
+        this.partial = partial;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return why the search stopped
+     */
+    public StopReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return true if the search ran to the end, so the answer is final
+     */
+    public boolean isComplete() {
+        return reason == StopReason.SOLVED || reason == StopReason.EXHAUSTED;
+    }
+
+    /**
+     * A goal. For an optimizing search that stopped early it is the best
+     * found so far, which need not be optimal.
+     *
+     * @return the goal, or empty if none was found
+     */
+    public Optional<C> getSolution() {
+        return Optional.ofNullable(solution);
+    }
+
+    /**
+     * The deepest valid configuration a search that stopped early reached,
+     * or for an in-place search a copy of where it stopped.
+     *
+     * @return the partial configuration, or empty
+     */
+    public Optional<C> getPartial() {
+        return Optional.ofNullable(partial);
+    }
+
+    /**
+     * @return the number of configurations expanded
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        return reason + " after " + nodes + " configurations";
+    }
+}
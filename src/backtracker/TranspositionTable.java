@@ -0,0 +1,138 @@
+package backtracker;
+
+/**
+ * A bounded set of configuration keys, used to remember configurations
+ * that are already known to lead to no solution. It is organized as
+ * buckets of a few slots; when a bucket is full, a clock hand sweeps its
+ * slots and evicts the first one not looked up since the hand last
+ * passed it. Keys are 64-bit hashes, so there is a vanishingly small
+ * chance that two different configurations are taken for one another.
+ * It is meant for a single search thread.
+ */
+public class TranspositionTable {
+    /*
+     * Number of slots in a bucket
+     */
+    private static final int WAYS = 4;
+
+    /*
+     * Stand-in for the key 0, which marks an empty slot
+     */
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private boolean[] referenced;
+    private byte[] hands;
+    private int bucketMask;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int size;
+
+    /**
+     * Create an empty table.
+     *
+     * @param capacity the most keys to hold; rounded up to a power of two
+     */
+    public TranspositionTable(int capacity) {
+        int buckets = 1;
+        while (buckets * WAYS < capacity) {
+            buckets <<= 1;
+        }
+        this.keys = new long[buckets * WAYS];
+        this.referenced = new boolean[buckets * WAYS];
+        this.hands = new byte[buckets];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Is a key in the table? Counts a hit or a miss.
+     *
+     * @param key a configuration key
+     * @return true if the key was added and not evicted since
+     */
+    public boolean contains(long key) {
+        key = key == 0 ? ZERO_KEY : key;
+        int base = bucket(key) * WAYS;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            if (keys[slot] == key) {
+                referenced[slot] = true;
+                hits++;
+                return true;
+            }
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Add a key, evicting another from its bucket if the bucket is full.
+     *
+     * @param key a configuration key
+     */
+    public void add(long key) {
+        key = key == 0 ? ZERO_KEY : key;
+        int bucket = bucket(key);
+        int base = bucket * WAYS;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            if (keys[slot] == key) {
+                return;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+                return;
+            }
+        }
+        int hand = hands[bucket];
+        while (referenced[base + hand]) {
+            referenced[base + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+        keys[base + hand] = key;
+        hands[bucket] = (byte) ((hand + 1) % WAYS);
+        evictions++;
+    }
+
+    private int bucket(long key) {
+        return (int) (key ^ (key >>> 32)) & bucketMask;
+    }
+
+    /**
+     * @return number of lookups that found their key
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that did not find their key
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of keys evicted to make room
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of keys held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the counters, for printing at the end of a run
+     */
+    @Override
+    public String toString() {
+        return "Transposition table: " + hits + " hits, " + misses + " misses, "
+                + evictions + " evictions, " + size + " entries";
+    }
+}
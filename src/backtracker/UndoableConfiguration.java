@@ -0,0 +1,58 @@
+package backtracker;
+
+/**
+ * A configuration that is changed in place instead of being copied.
+ * Moving to a successor applies one of a numbered set of branches, and
+ * backtracking undoes the most recently applied branch, so a search
+ * needs only one instance no matter how deep it goes.
+ */
+public interface UndoableConfiguration {
+    /**
+     * How many successors the current configuration has.
+     *
+     * @return the number of branches that can be applied
+     */
+    public int getBranchCount();
+
+    /**
+     * Move to a successor of the current configuration.
+     *
+     * @param branch which successor, from 0 to getBranchCount() - 1
+     */
+    public void apply(int branch);
+
+    /**
+     * Go back to the configuration before the last apply.
+     */
+    public void undo();
+
+    /**
+     * Is the current configuration valid or not?
+     *
+     * @return true if valid; false otherwise
+     */
+    public boolean isValid();
+
+    /**
+     * Is the current configuration a goal?
+     * @return true if goal; false otherwise
+     */
+    public boolean isGoal();
+
+    /**
+     * A hash of everything that decides what lies below the current
+     * configuration, so configurations reached by different paths that
+     * have the same future get the same key.
+     *
+     * @return a 64-bit key of the current configuration
+     */
+    public long getStateKey();
+
+    /**
+     * A copy of the current configuration that later changes to this one
+     * do not affect, to keep as a result.
+     *
+     * @return an independent copy
+     */
+    public UndoableConfiguration snapshot();
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+import backtracker.Backtracker;
+import backtracker.SolveLimits;
+import backtracker.SolveResult;
+import backtracker.TranspositionTable;
+import backtracker.UndoableConfiguration;
+import scheduling.*;
+
+import java.io.IOException;
+
+/**
+ * Compares the job and machine orderings of ReadySetSchedule by the nodes
+ * each search explores, on data/graph1..6.txt where they are acyclic, with
+ * the fixed rank order of IncrementalSchedule as the baseline. Each graph
+ * is searched at the makespan of the best heuristic schedule, where a
+ * solution is known to exist, and one below it, where the search must
+ * either find a better schedule or prove there is none. Every search
+ * stops after a budget of nodes.<br>
+ * <br>
+ * <tt>$ java benchmark.OrderingBenchmark [machines [nodeBudget]]</tt>
+ */
+public class OrderingBenchmark {
+    /*
+     * Most failed configurations each search remembers
+     */
+    private static final int TABLE_CAPACITY = 1 << 20;
+
+    private int machines;
+    private long budget;
+
+    private OrderingBenchmark(int machines, long budget) {
+        this.machines = machines;
+        this.budget = budget;
+    }
+
+    /**
+     * Run every ordering on one graph file.
+     *
+     * @param label a short name for the graph
+     * @param filename the graph file
+     */
+    private void benchmark(String label, String filename) {
+        CompiledGraph graph;
+        try {
+            graph = GraphLoader.load(filename);
+        } catch (IOException ex) {
+            System.out.println(label + ": skipped, " + ex.getMessage());
+            return;
+        }
+        int makespan = ListScheduler.best(graph, machines).getMakespan();
+        for (int limit = makespan; limit >= makespan - 1; limit--) {
+            report(label, limit, "rank order (fixed)", new IncrementalSchedule(graph, limit, machines));
+            for (JobOrdering.Standard jobs : JobOrdering.Standard.values()) {
+                for (MachineOrdering.Standard order : MachineOrdering.Standard.values()) {
+                    report(label, limit, jobs + "/" + order,
+                            new ReadySetSchedule(graph, limit, machines, jobs, order));
+                }
+            }
+        }
+    }
+
+    /**
+     * Search one configuration and print what it took.
+     */
+    private void report(String label, int limit, String ordering, UndoableConfiguration config) {
+        long start = System.nanoTime();
+        SolveResult<UndoableConfiguration> result = new Backtracker(false).solveInPlaceIterative(config,
+                new TranspositionTable(TABLE_CAPACITY), SolveLimits.NONE.withNodeBudget(budget));
+        System.out.printf("%-8s %5d  %-34s %-11s %12d nodes %10.3f ms%n", label, limit, ordering,
+                result.getReason(), result.getNodes(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Run the comparison.
+     *
+     * @param args machines and node budget, both optional
+     */
+    public static void main(String[] args) {
+        int machines = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        OrderingBenchmark benchmark = new OrderingBenchmark(machines, budget);
+        System.out.printf("%-8s %5s  %-34s %-11s %18s %13s%n",
+                "graph", "limit", "jobs/machines", "result", "explored", "time");
+        for (int g = 1; g <= 6; g++) {
+            benchmark.benchmark("graph" + g, "data/graph" + g + ".txt");
+        }
+    }
+}
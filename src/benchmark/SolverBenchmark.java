@@ -0,0 +1,191 @@
+package benchmark;
+
+import backtracker.Backtracker;
+import backtracker.TranspositionTable;
+import scheduling.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Times the stages of a scheduling run one at a time: loading a graph,
+ * its analysis, compiling it, and solving it. Each stage is run a number
+ * of warmup iterations, then timed over a number of measured iterations,
+ * and reported as average time, throughput and bytes allocated per run.
+ * The graphs are data/graph1..6.txt, where they are acyclic, and random
+ * graphs of 1k, 10k and 100k jobs.<br>
+ * <br>
+ * <tt>$ java benchmark.SolverBenchmark [iterations [machines [timeLimit [sizes]]]]</tt><br>
+ * <br>
+ * where sizes is a comma separated list of random graph sizes.
+ */
+public class SolverBenchmark {
+    /*
+     * Largest graph the copying solver is run on; it copies every job's
+     * finish time at every step
+     */
+    private static final int COPYING_SOLVER_LIMIT = 1000;
+
+    /*
+     * Largest graph the recursive in-place solver is run on, since it
+     * recurses once per job; the iterative one is run on every graph
+     */
+    private static final int IN_PLACE_SOLVER_LIMIT = 10000;
+
+    /*
+     * Stack size of the benchmark thread, for the recursive solvers
+     */
+    private static final long STACK_SIZE = 1L << 28;
+
+    /*
+     * Most failed configurations the solver remembers when it has a table,
+     * as in BatchSolver and ScheduleServer
+     */
+    private static final int TABLE_CAPACITY = 1 << 18;
+
+    /**
+     * A stage being timed
+     */
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /*
+     * Where the stages' own printing goes while they are timed
+     */
+    private static final PrintStream NOWHERE = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    private int iterations;
+    private int machines;
+    private PrintStream out;
+
+    private SolverBenchmark(int iterations, int machines, PrintStream out) {
+        this.iterations = iterations;
+        this.machines = machines;
+        this.out = out;
+    }
+
+    /**
+     * Time every stage on one graph file.
+     *
+     * @param label a short name for the graph
+     * @param filename the graph file
+     * @param limit the time limit for the solvers
+     */
+    private void benchmark(String label, String filename, int limit) throws Exception {
+        CompiledGraph compiled;
+        try {
+            compiled = GraphLoader.load(filename);
+        } catch (IOException ex) {
+            out.println(label + ": skipped, " + ex.getMessage());
+            return;
+        }
+        measure(label, "GraphLoader.load", () -> GraphLoader.load(filename));
+        measure(label, "new Graph", () -> new Graph(filename));
+        System.setOut(NOWHERE);
+        Graph graph = new Graph(filename);
+        System.setOut(out);
+        measure(label, "isAcyclic+ranks", graph::isAcyclic);
+        measure(label, "compile", graph::compile);
+
+        if (compiled.size() <= COPYING_SOLVER_LIMIT) {
+            Backtracker bt = new Backtracker(false);
+            measure(label, "Backtracker.solve", () ->
+                    bt.solve(new JobSchedulingConfig(graph, limit, machines)));
+            measure(label, "solveIterative", () ->
+                    bt.solveIterative(new JobSchedulingConfig(graph, limit, machines)));
+        }
+        if (compiled.size() <= IN_PLACE_SOLVER_LIMIT) {
+            Backtracker bt = new Backtracker(false);
+            measure(label, "solveInPlace", () ->
+                    bt.solveInPlace(new IncrementalSchedule(compiled, limit, machines)));
+        }
+        Backtracker iterative = new Backtracker(false);
+        measure(label, "InPlaceIterative", () ->
+                iterative.solveInPlaceIterative(new IncrementalSchedule(compiled, limit, machines), null));
+        // what BatchSolver and ScheduleServer run
+        measure(label, "InPlaceIter+table", () ->
+                iterative.solveInPlaceIterative(new IncrementalSchedule(compiled, limit, machines),
+                        new TranspositionTable(TABLE_CAPACITY)));
+    }
+
+    /**
+     * Run one stage for the warmup and measured iterations and report it.
+     */
+    private void measure(String label, String stage, Stage task) throws Exception {
+        System.setOut(NOWHERE);
+        try {
+            for (int i = 0; i < Math.max(1, iterations / 2); i++) {
+                task.run();
+            }
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                task.run();
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+            out.printf("%-12s %-18s %12.3f ms/op %12.1f ops/s %14d B/op %10.1f MB/s%n",
+                    label, stage, nanos / 1e6 / iterations, iterations * 1e9 / nanos,
+                    bytes / iterations, bytes * 1e3 / nanos);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args iterations, machines, timeLimit and sizes, all optional
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int machines = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int timeLimit = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String sizes = args.length > 3 ? args[3] : "1000,10000,100000";
+        SolverBenchmark benchmark = new SolverBenchmark(iterations, machines, System.out);
+
+        // rethrown here, so a failed run exits with an error rather than a partial table
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                for (int g = 1; g <= 6; g++) {
+                    benchmark.benchmark("graph" + g, "data/graph" + g + ".txt", timeLimit);
+                }
+                for (String size : sizes.split(",")) {
+                    int jobs = Integer.parseInt(size);
+                    File file = File.createTempFile("synthetic" + jobs, ".txt");
+                    file.deleteOnExit();
+                    SyntheticGraphs.write(file, jobs, machines, 3, jobs);
+                    // loose enough that the solvers only measure their cost per node
+                    benchmark.benchmark("random" + jobs, file.getPath(), Integer.MAX_VALUE);
+                }
+            } catch (Exception | Error ex) {
+                failure.set(ex);
+            }
+        }, "benchmark", STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (failure.get() instanceof Error) {
+            throw (Error) failure.get();
+        } else if (failure.get() != null) {
+            throw (Exception) failure.get();
+        }
+    }
+}
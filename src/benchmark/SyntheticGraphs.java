@@ -0,0 +1,60 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates random job graphs in the same text format as data/*.txt.
+ * Job i depends only on jobs with larger numbers, so every generated
+ * graph is acyclic.
+ */
+public class SyntheticGraphs {
+
+    /**
+     * Write a random acyclic job graph to a file.
+     *
+     * @param file     where to write the graph
+     * @param jobs     number of jobs
+     * @param machines number of cost columns
+     * @param degree   number of out-neighbors of each job, where possible
+     * @param seed     random seed
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, int jobs, int machines, int degree, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < jobs; i++) {
+                out.write("J" + i);
+                for (int m = 0; m < machines; m++) {
+                    out.write("," + (1 + random.nextInt(9)));
+                }
+                // out-neighbors are drawn from the next few hundred jobs,
+                // which keeps the graph deep rather than flat
+                int window = Math.min(jobs - 1 - i, 256);
+                for (int d = 0; d < degree && window > 0; d++) {
+                    out.write(",J" + (i + 1 + random.nextInt(window)));
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Write a graph from the command line.
+     *
+     * @param args file jobs machines degree seed
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("Usage: java benchmark.SyntheticGraphs file #-jobs #-machines degree seed");
+        } else {
+            write(new File(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Long.parseLong(args[4]));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package scheduling;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary form of a compiled graph, with everything the analysis works
+ * out already in it, so that loading a graph costs little more than
+ * mapping the file: there is nothing to parse, sort or check for cycles.
+ * All numbers are little-endian 32-bit ints, in this order:<ul>
+ * <li>the magic bytes <tt>JSG1</tt>, whose last byte is the version;</li>
+ * <li>the number of jobs n, of cost columns m, of edges e, and of bytes
+ *  of job names;</li>
+ * <li>the out-neighbors in compressed sparse row form, n+1 starts and e
+ *  job numbers, then the in-neighbors likewise;</li>
+ * <li>the n by m costs, row by row;</li>
+ * <li>the rank, the cheapest cost and the cheapest critical path (tail) of
+ *  each job, and the machine class of each machine;</li>
+ * <li>n+1 offsets of the job names, then the names in UTF-8.</li>
+ * </ul>
+ * Jobs are numbered in topological order of nondecreasing rank, as in
+ * CompiledGraph, so that is the topological order.<br>
+ * <br>
+ * <tt>$ java scheduling.BinaryGraph graph-file binary-file</tt><br>
+ * <br>
+ * converts a text graph file.
+ */
+public class BinaryGraph {
+	/* The first bytes of every binary graph file */
+	private static final byte[] MAGIC = {'J', 'S', 'G', '1'};
+
+	/* Ints before the first section: the magic bytes and four counts */
+	private static final int HEADER_INTS = 5;
+
+	private BinaryGraph() {
+	}
+
+	/**
+	 * @param file a file
+	 * @return true if the file starts with the magic bytes of a binary graph
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isBinary(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+			while (start.hasRemaining() && channel.read(start) != -1) {
+			}
+			if (start.hasRemaining()) {
+				return false;
+			}
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (start.get(i) != MAGIC[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Write a compiled graph in binary form.
+	 *
+	 * @param graph the graph
+	 * @param file  where to write it; it is replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(CompiledGraph graph, Path file) throws IOException {
+		int n = graph.size();
+		int m = graph.machines;
+		int e = graph.outAdj.length;
+		byte[][] names = new byte[n][];
+		int[] nameStart = new int[n + 1];
+		for (int job = 0; job < n; job++) {
+			names[job] = graph.names[job].getBytes(StandardCharsets.UTF_8);
+			nameStart[job + 1] = nameStart[job] + names[job].length;
+		}
+		long ints = HEADER_INTS + 2L * (n + 1 + e) + (long) n * m + 3L * n + m + n + 1;
+		long size = 4 * ints + nameStart[n];
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("graph too large for the binary format");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(MAGIC);
+		buffer.putInt(n).putInt(m).putInt(e).putInt(nameStart[n]);
+		IntBuffer out = buffer.asIntBuffer();
+		out.put(graph.outStart).put(graph.outAdj);
+		out.put(graph.inStart).put(graph.inAdj);
+		for (int[] row : graph.cost) {
+			out.put(row, 0, m);
+		}
+		out.put(graph.rank).put(graph.minCost).put(graph.tail).put(graph.machineClass);
+		out.put(nameStart);
+		buffer.position(buffer.position() + 4 * out.position());
+		for (byte[] name : names) {
+			buffer.put(name);
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Read a binary graph by mapping the file, copying each section out of
+	 * the mapping with a single bulk get.
+	 *
+	 * @param file a binary graph file
+	 * @return the compiled graph
+	 * @throws IOException if the file cannot be read, or is not a valid binary graph
+	 */
+	public static CompiledGraph read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 4 * HEADER_INTS) {
+				throw new IOException(file + ": not a binary graph");
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			for (byte b : MAGIC) {
+				if (map.get() != b) {
+					throw new IOException(file + ": not a binary graph");
+				}
+			}
+			int n = map.getInt();
+			int m = map.getInt();
+			int e = map.getInt();
+			int nameBytes = map.getInt();
+			long ints = HEADER_INTS + 2L * (n + 1 + e) + (long) n * m + 3L * n + m + n + 1;
+			if (n < 0 || m < 0 || e < 0 || nameBytes < 0 || size != 4 * ints + nameBytes) {
+				throw new IOException(file + ": binary graph of the wrong size");
+			}
+
+			IntBuffer in = map.asIntBuffer();
+			int[] outStart = get(in, n + 1);
+			int[] outAdj = get(in, e);
+			int[] inStart = get(in, n + 1);
+			int[] inAdj = get(in, e);
+			int[][] cost = new int[n][];
+			for (int job = 0; job < n; job++) {
+				cost[job] = get(in, m);
+			}
+			int[] rank = get(in, n);
+			int[] minCost = get(in, n);
+			int[] tail = get(in, n);
+			int[] machineClass = get(in, m);
+			int[] nameStart = get(in, n + 1);
+			check(file, n, e, outStart, outAdj, inStart, inAdj, nameStart, nameBytes);
+
+			byte[] bytes = new byte[nameBytes];
+			map.position(map.position() + 4 * in.position());
+			map.get(bytes);
+			String[] names = new String[n];
+			for (int job = 0; job < n; job++) {
+				names[job] = new String(bytes, nameStart[job], nameStart[job + 1] - nameStart[job], StandardCharsets.UTF_8);
+			}
+			return new CompiledGraph(names, cost, rank, outStart, outAdj, inStart, inAdj,
+					machineClass, minCost, tail);
+		}
+	}
+
+	private static int[] get(IntBuffer in, int count) {
+		int[] values = new int[count];
+		in.get(values);
+		return values;
+	}
+
+	/**
+	 * Check that the adjacency and name offsets are in range, that every
+	 * edge goes to a higher job number and that each row is sorted, which
+	 * the solvers rely on.
+	 */
+	private static void check(Path file, int n, int e, int[] outStart, int[] outAdj,
+							  int[] inStart, int[] inAdj, int[] nameStart, int nameBytes) throws IOException {
+		if (outStart[0] != 0 || outStart[n] != e || inStart[0] != 0 || inStart[n] != e
+				|| nameStart[0] != 0 || nameStart[n] != nameBytes) {
+			throw new IOException(file + ": corrupt binary graph");
+		}
+		for (int job = 0; job < n; job++) {
+			if (outStart[job] > outStart[job + 1] || inStart[job] > inStart[job + 1]
+					|| nameStart[job] > nameStart[job + 1]) {
+				throw new IOException(file + ": corrupt binary graph");
+			}
+			for (int k = outStart[job]; k < outStart[job + 1]; k++) {
+				if (outAdj[k] <= job || outAdj[k] >= n || k > outStart[job] && outAdj[k] <= outAdj[k - 1]) {
+					throw new IOException(file + ": corrupt binary graph");
+				}
+			}
+			for (int k = inStart[job]; k < inStart[job + 1]; k++) {
+				if (inAdj[k] >= job || inAdj[k] < 0 || k > inStart[job] && inAdj[k] <= inAdj[k - 1]) {
+					throw new IOException(file + ": corrupt binary graph");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Convert a text graph file. It is read by the Graph constructor, so
+	 * that jobs of equal rank are numbered as a run on the text file
+	 * numbers them, and the binary file gives the same schedules.
+	 *
+	 * @param args the text file and the binary file to write
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java scheduling.BinaryGraph graph-file binary-file");
+			return;
+		}
+		long start = System.nanoTime();
+		CompiledGraph graph = new Graph(args[0]).compile();
+		write(graph, Paths.get(args[1]));
+		System.out.printf("Wrote %d jobs and %d dependencies to %s in %.3f ms%n",
+				graph.size(), graph.outAdj.length, args[1], (System.nanoTime() - start) / 1e6);
+	}
+}
@@ -0,0 +1,409 @@
+package scheduling;
+
+import java.util.*;
+
+/**
+ * An immutable, index-based form of a job graph for the solvers.
+ * Jobs are numbered 0 to size()-1 in nondecreasing rank, so every job's
+ * number is larger than the numbers of its in-neighbors. Adjacency is
+ * kept in compressed sparse row form: the out-neighbors of job j are
+ * outAdj[outStart[j]] to outAdj[outStart[j+1]-1], in increasing order, and
+ * likewise for the in-neighbors. Nothing in it is boxed.
+ */
+public class CompiledGraph {
+	/* Job names, indexed by job number */
+	final String[] names;
+
+	/* Out-neighbors, compressed sparse row */
+	final int[] outStart;
+	final int[] outAdj;
+
+	/* In-neighbors, compressed sparse row */
+	final int[] inStart;
+	final int[] inAdj;
+
+	/* cost[job][machine] */
+	final int[][] cost;
+
+	/* Rank of each job */
+	final int[] rank;
+
+	/* Number of cost columns, i.e. of machine types */
+	final int machines;
+
+	/* For each machine, the first machine with the same cost column */
+	final int[] machineClass;
+
+	/* Cheapest cost of each job, and the longest path from it to an exit
+	   job, itself included, at those costs */
+	final int[] minCost;
+	final int[] tail;
+
+	/* Job numbers by name */
+	private final Map<String, Integer> index;
+
+	/**
+	 * Compile jobs whose ranks have been set.
+	 *
+	 * @param jobs the jobs of a graph
+	 */
+	CompiledGraph(Collection<Job> jobs) {
+		List<Job> sorted = new ArrayList<>(jobs);
+		sorted.sort(Comparator.comparingInt(Job::getRank));
+		int n = sorted.size();
+
+		this.index = new HashMap<>();
+		this.names = new String[n];
+		for (int i = 0; i < n; i++) {
+			names[i] = sorted.get(i).getName();
+			index.put(names[i], i);
+		}
+
+		this.machines = n == 0 ? 0 : sorted.get(0).getCosts().length;
+		this.cost = new int[n][];
+		this.rank = new int[n];
+		this.outStart = new int[n + 1];
+		this.inStart = new int[n + 1];
+		List<Collection<Job>> outs = new ArrayList<>(n);
+		List<Collection<Job>> ins = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Job job = sorted.get(i);
+			cost[i] = job.getCosts().clone();
+			rank[i] = job.getRank();
+			outs.add(job.getOutNeighbors());
+			ins.add(job.getInNeighbors());
+			outStart[i + 1] = outStart[i] + outs.get(i).size();
+			inStart[i + 1] = inStart[i] + ins.get(i).size();
+		}
+		this.outAdj = flatten(outs, outStart);
+		this.inAdj = flatten(ins, inStart);
+		this.machineClass = machineClasses(cost, machines);
+		this.minCost = minCosts(cost, machines);
+		this.tail = tails(minCost);
+	}
+
+	/**
+	 * A constructor for graphs built straight from arrays
+	 */
+	private CompiledGraph(String[] names, int[][] cost, int[] rank,
+						  int[][] out, int[][] in) {
+		this.names = names;
+		this.cost = cost;
+		this.rank = rank;
+		this.outStart = out[0];
+		this.outAdj = out[1];
+		this.inStart = in[0];
+		this.inAdj = in[1];
+		this.machines = cost.length == 0 ? 0 : cost[0].length;
+		this.machineClass = machineClasses(cost, machines);
+		this.minCost = minCosts(cost, machines);
+		this.tail = tails(minCost);
+		this.index = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			index.put(names[i], i);
+		}
+	}
+
+	/**
+	 * A constructor for graphs whose analysis is already done, as read
+	 * from a binary graph file
+	 */
+	CompiledGraph(String[] names, int[][] cost, int[] rank,
+				  int[] outStart, int[] outAdj, int[] inStart, int[] inAdj,
+				  int[] machineClass, int[] minCost, int[] tail) {
+		this.names = names;
+		this.cost = cost;
+		this.rank = rank;
+		this.outStart = outStart;
+		this.outAdj = outAdj;
+		this.inStart = inStart;
+		this.inAdj = inAdj;
+		this.machines = machineClass.length;
+		this.machineClass = machineClass;
+		this.minCost = minCost;
+		this.tail = tail;
+		this.index = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			index.put(names[i], i);
+		}
+	}
+
+	/**
+	 * Compile a graph given as an edge list, setting the ranks and
+	 * renumbering the jobs by rank. Repeated edges are dropped.
+	 *
+	 * @param names job names, by job number
+	 * @param cost  cost[job][machine], by job number
+	 * @param from  the job each edge leaves
+	 * @param to    the job each edge enters
+	 * @param edges the number of edges in from and to
+	 * @return the compiled graph
+	 * @throws IllegalArgumentException if the graph is cyclic
+	 */
+	static CompiledGraph fromEdges(String[] names, int[][] cost,
+								   int[] from, int[] to, int edges) {
+		int n = names.length;
+		int[][] out = csr(n, from, to, edges);
+
+		TopologicalSort sort = new TopologicalSort(n, out[0], out[1]);
+		if (!sort.isAcyclic()) {
+			StringBuilder cycle = new StringBuilder();
+			for (int v : sort.getCycle()) {
+				cycle.append(" ").append(names[v]);
+			}
+			throw new IllegalArgumentException("Graph is cyclic. No solution! Cycle:" + cycle);
+		}
+		int[] rank = sort.getRanks();
+
+		// renumber by rank, keeping the given order among equal ranks
+		int[] renumber = new int[n];
+		int[] order = sort.getOrder();
+		for (int i = 0; i < n; i++) {
+			renumber[order[i]] = i;
+		}
+		String[] sortedNames = new String[n];
+		int[][] sortedCost = new int[n][];
+		int[] sortedRank = new int[n];
+		for (int v = 0; v < n; v++) {
+			sortedNames[renumber[v]] = names[v];
+			sortedCost[renumber[v]] = cost[v];
+			sortedRank[renumber[v]] = rank[v];
+		}
+		int[] u = new int[edges];
+		int[] v = new int[edges];
+		for (int e = 0; e < edges; e++) {
+			u[e] = renumber[from[e]];
+			v[e] = renumber[to[e]];
+		}
+		return new CompiledGraph(sortedNames, sortedCost, sortedRank,
+				csr(n, u, v, edges), csr(n, v, u, edges));
+	}
+
+	/**
+	 * Group machines whose cost columns are identical. Two such machines
+	 * that also finish at the same time are interchangeable: whatever can
+	 * be scheduled on one can be scheduled on the other.
+	 *
+	 * @param cost     cost[job][machine]
+	 * @param machines the number of cost columns
+	 * @return for each machine, the first machine with the same column
+	 */
+	static int[] machineClasses(int[][] cost, int machines) {
+		int[] classes = new int[machines];
+		for (int m = 0; m < machines; m++) {
+			classes[m] = m;
+			for (int other = 0; other < m && classes[m] == m; other++) {
+				if (classes[other] == other && sameColumn(cost, m, other)) {
+					classes[m] = other;
+				}
+			}
+		}
+		return classes;
+	}
+
+	private static boolean sameColumn(int[][] cost, int a, int b) {
+		for (int[] row : cost) {
+			if (row[a] != row[b]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Build compressed sparse rows from an edge list, each row sorted and
+	 * without repeats.
+	 *
+	 * @return the row starts and the concatenated rows
+	 */
+	private static int[][] csr(int n, int[] from, int[] to, int edges) {
+		int[] start = new int[n + 1];
+		for (int e = 0; e < edges; e++) {
+			start[from[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			start[v + 1] += start[v];
+		}
+		int[] adj = new int[edges];
+		int[] fill = Arrays.copyOf(start, n);
+		for (int e = 0; e < edges; e++) {
+			adj[fill[from[e]]++] = to[e];
+		}
+		int k = 0;
+		int rowStart = 0;
+		for (int v = 0; v < n; v++) {
+			int rowEnd = start[v + 1];
+			Arrays.sort(adj, rowStart, rowEnd);
+			start[v] = k;
+			for (int i = rowStart; i < rowEnd; i++) {
+				if (i == rowStart || adj[i] != adj[i - 1]) {
+					adj[k++] = adj[i];
+				}
+			}
+			rowStart = rowEnd;
+		}
+		start[n] = k;
+		return new int[][]{start, Arrays.copyOf(adj, k)};
+	}
+
+	/**
+	 * Lay neighbor lists end to end as job numbers, each list sorted.
+	 */
+	private int[] flatten(List<Collection<Job>> lists, int[] start) {
+		int[] adj = new int[start[lists.size()]];
+		int k = 0;
+		for (int i = 0; i < lists.size(); i++) {
+			for (Job job : lists.get(i)) {
+				adj[k++] = index.get(job.getName());
+			}
+			Arrays.sort(adj, start[i], k);
+		}
+		return adj;
+	}
+
+	/**
+	 * @param cost     cost[job][machine]
+	 * @param machines how many of the columns are in use
+	 * @return the cheapest cost of each job on those machines
+	 */
+	static int[] minCosts(int[][] cost, int machines) {
+		int[] min = new int[cost.length];
+		for (int job = 0; job < cost.length; job++) {
+			min[job] = Integer.MAX_VALUE;
+			for (int m = 0; m < machines; m++) {
+				min[job] = Math.min(min[job], cost[job][m]);
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Find the longest path from each job to an exit job, the job itself
+	 * included, when each job takes a given time. Job numbers are
+	 * topological, so one backward pass does.
+	 *
+	 * @param time the time each job takes
+	 * @return the length of each job's path
+	 */
+	int[] tails(int[] time) {
+		int n = size();
+		int[] tail = new int[n];
+		for (int job = n - 1; job >= 0; job--) {
+			int longest = 0;
+			for (int k = outStart[job]; k < outStart[job + 1]; k++) {
+				longest = Math.max(longest, tail[outAdj[k]]);
+			}
+			tail[job] = longest + time[job];
+		}
+		return tail;
+	}
+
+	/**
+	 * @return the number of jobs
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return the number of cost columns
+	 */
+	public int getMachineCount() {
+		return machines;
+	}
+
+	/**
+	 * @param numMachines a number of machines to schedule on
+	 * @throws IllegalArgumentException if there are no costs for that many machines
+	 */
+	public void checkMachines(int numMachines) {
+		if (numMachines < 1 || numMachines > machines) {
+			throw new IllegalArgumentException("machines must be from 1 to " + machines);
+		}
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the name of the job
+	 */
+	public String getName(int job) {
+		return names[job];
+	}
+
+	/**
+	 * @param name a job name
+	 * @return the job number, or -1 if there is no such job
+	 */
+	public int indexOf(String name) {
+		Integer job = index.get(name);
+		return job == null ? -1 : job;
+	}
+
+	/**
+	 * @param job a job number
+	 * @param machine a machine ID
+	 * @return the time the job takes on the machine
+	 */
+	public int getCost(int job, int machine) {
+		return cost[job][machine];
+	}
+
+	/**
+	 * @param machine a machine ID
+	 * @return the first machine whose costs are all the same as this one's
+	 */
+	public int getMachineClass(int machine) {
+		return machineClass[machine];
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the length of the longest path from the job to an exit job,
+	 * the job included, when every job runs on its cheapest machine
+	 */
+	public int getTail(int job) {
+		return tail[job];
+	}
+
+	/**
+	 * @param job a job number
+	 * @return rank of the job
+	 */
+	public int getRank(int job) {
+		return rank[job];
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the number of out-neighbors of the job
+	 */
+	public int getOutDegree(int job) {
+		return outStart[job + 1] - outStart[job];
+	}
+
+	/**
+	 * @param job a job number
+	 * @param k which out-neighbor, from 0 to getOutDegree(job) - 1
+	 * @return the job number of the out-neighbor
+	 */
+	public int getOutNeighbor(int job, int k) {
+		return outAdj[outStart[job] + k];
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the number of in-neighbors of the job
+	 */
+	public int getInDegree(int job) {
+		return inStart[job + 1] - inStart[job];
+	}
+
+	/**
+	 * @param job a job number
+	 * @param k which in-neighbor, from 0 to getInDegree(job) - 1
+	 * @return the job number of the in-neighbor
+	 */
+	public int getInNeighbor(int job, int k) {
+		return inAdj[inStart[job] + k];
+	}
+}
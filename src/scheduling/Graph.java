@@ -2,10 +2,17 @@ package scheduling;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
- * Class representing the dependency of jobs
+ * Class representing the dependency of jobs.
+ * Jobs and dependencies can be added and removed after the graph is built.
+ * Each change updates the ranks and tails of only the jobs it affects, and
+ * the ranks serve as the topological order, which is listed again only
+ * when asked for.
  */
 public class Graph {
 	/**
@@ -13,25 +20,75 @@ public class Graph {
 	 */
 	protected Map<String, Job> jobs;
 
+	/**
+	 * The jobs in a topological order of nondecreasing rank, or null if
+	 * the graph changed since it was listed, and the jobs on a cycle if
+	 * there is one
+	 */
+	private List<Job> topologicalOrder;
+	private List<Job> cycle;
+
+	/**
+	 * For each machine, the first machine with an identical cost column,
+	 * or null if the costs changed since it was found
+	 */
+	private int[] machineClasses;
+
+	/**
+	 * The compiled form the graph was read from, if it was read from a
+	 * binary file
+	 */
+	private CompiledGraph compiled;
+
 	/**
 	 * Construct a directed graph by reading data from a file
 	 * Perform acyclicity test. If the graph is not acyclic,
 	 * print a proper message "Cyclic. No solution" and exit the program.
 	 * Set the rank of all nodes.
 	 * Display the graph
+	 * A binary graph file, which holds all that already, is only read.
 	 *
 	 * @param filename The name of a file containing node/job's name, costs, and dependency
+	 * @see BinaryGraph
 	 */
 	public Graph(String filename) {
+		Path path = Paths.get(filename);
+		boolean binary = false;
+		try {
+			binary = BinaryGraph.isBinary(path);
+		} catch (IOException ex) {
+			// reading it as text reports the problem
+		}
+		if (binary) {
+			try {
+				setCompiled(BinaryGraph.read(path));
+			} catch (IOException ex) {
+				System.out.println(ex);
+				System.exit(0);
+			}
+			System.out.println("Graph is acyclic.");
+			return;
+		}
+
 		try (Scanner in = new Scanner(new File(filename))) {
 			//0. Construct the graph
 			jobs = new HashMap<>();
+			int columns = -1;
 
 			while (in.hasNextLine()) {
 				String line = in.nextLine();
 				String[] fields = line.split(",");
-				int[] costs = {Integer.parseInt(fields[1]),
-						Integer.parseInt(fields[2]), Integer.parseInt(fields[3])};
+				if (columns == -1) {
+					// as many cost columns as numbers on the first line
+					columns = 1;
+					while (columns + 1 < fields.length && fields[columns + 1].matches("\\d+")) {
+						columns++;
+					}
+				}
+				int[] costs = new int[columns];
+				for (int i = 0; i < columns; ++i) {
+					costs[i] = Integer.parseInt(fields[i + 1]);
+				}
 				if (!jobs.containsKey(fields[0])) {
 
 					jobs.put(fields[0], new Job(fields[0], costs));
@@ -40,7 +97,7 @@ public class Graph {
 					jobs.get(fields[0]).setCosts(costs);
 				}
 				Job job = jobs.get(fields[0]);
-				for (int i = 4; i < fields.length; ++i) {
+				for (int i = columns + 1; i < fields.length; ++i) {
 					if (!jobs.containsKey(fields[i])) {
 						jobs.put(fields[i], new Job(fields[i]));
 					}
@@ -56,7 +113,11 @@ public class Graph {
 
 		//1. Acyclicity test
 		if (!isAcyclic()) {
-			System.out.println("Graph is cyclic. No solution!");
+			System.out.print("Graph is cyclic. No solution! Cycle:");
+			for (Job job : cycle) {
+				System.out.print(" " + job.getName());
+			}
+			System.out.println();
 			System.exit(0);
 		}
 		System.out.println("Graph is acyclic.");
@@ -64,6 +125,58 @@ public class Graph {
 
 		//2. Set rank of each node in graph
 		setRankBFS();
+
+		//3. Find interchangeable machines
+		machineClasses = machineClasses(jobs.values());
+
+		//4. Set the cheapest critical path below each node
+		setTails();
+	}
+
+	/**
+	 * Build the jobs of a compiled graph, taking its ranks, order, machine
+	 * classes and tails as they are.
+	 *
+	 * @param graph a compiled graph
+	 */
+	private void setCompiled(CompiledGraph graph) {
+		int n = graph.size();
+		Job[] byNumber = new Job[n];
+		jobs = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			byNumber[i] = new Job(graph.names[i], graph.cost[i].clone());
+			byNumber[i].setRank(graph.rank[i]);
+			byNumber[i].setTail(graph.tail[i]);
+			jobs.put(graph.names[i], byNumber[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			for (int k = graph.outStart[i]; k < graph.outStart[i + 1]; k++) {
+				byNumber[i].addOutNeighbor(byNumber[graph.outAdj[k]]);
+				byNumber[graph.outAdj[k]].addInNeighbor(byNumber[i]);
+			}
+		}
+		topologicalOrder = new ArrayList<>(Arrays.asList(byNumber));
+		cycle = new ArrayList<>();
+		machineClasses = graph.machineClass.clone();
+		compiled = graph;
+	}
+
+	/**
+	 * Set the tail of every job, the length of the longest path from it to
+	 * an end node when every job runs on its cheapest machine, so that
+	 * lower bounds on a schedule can be had in constant time per job.
+	 * The topological order must have been found.
+	 */
+	public void setTails() {
+		List<Job> order = getTopologicalOrder();
+		for (int i = order.size() - 1; i >= 0; i--) {
+			Job job = order.get(i);
+			int below = 0;
+			for (Job out : job.getOutNeighbors()) {
+				below = Math.max(below, out.getTail());
+			}
+			job.setTail(below + job.getMinCost());
+		}
 	}
 
 	/**
@@ -88,33 +201,374 @@ public class Graph {
 
 
 	/**
-	 * Perform the following peeling process in a DFS manner starting from each start node.
-	 * Repeat until there is no start node left:
-	 * Remove a start node with its edges from the graph.
+	 * Compile the jobs into the index-based form the solvers read.
+	 * The ranks must have been set.
+	 *
+	 * @return an immutable, index-based copy of this graph
+	 */
+	public CompiledGraph compile() {
+		if (compiled != null) {
+			return compiled;
+		}
+		return new CompiledGraph(jobs.values());
+	}
+
+	/**
+	 * Machines with identical cost columns are interchangeable whenever
+	 * they finish at the same time, so a search need only try one of them.
+	 *
+	 * @return for each machine, the first machine whose costs are all the
+	 * same as its own
+	 */
+	public int[] getMachineClasses() {
+		if (machineClasses == null) {
+			machineClasses = machineClasses(jobs.values());
+		}
+		return this.machineClasses;
+	}
+
+	/**
+	 * Group the machines with identical cost columns.
 	 *
-	 * @return true iff the resulted graph is emoty
+	 * @param jobs the jobs, all with the same number of costs
+	 * @return for each machine, the first machine with the same column
+	 */
+	static int[] machineClasses(Collection<Job> jobs) {
+		int[][] cost = new int[jobs.size()][];
+		int i = 0;
+		for (Job job : jobs) {
+			cost[i++] = job.getCosts();
+		}
+		return CompiledGraph.machineClasses(cost, i == 0 ? 0 : cost[0].length);
+	}
+
+	/**
+	 * @return the jobs in a topological order of nondecreasing rank,
+	 * once the ranks are set
+	 */
+	public List<Job> getTopologicalOrder() {
+		if (topologicalOrder == null) {
+			List<Job> nodes = new ArrayList<>(jobs.values());
+			int[] rank = new int[nodes.size()];
+			for (int i = 0; i < rank.length; i++) {
+				rank[i] = nodes.get(i).getRank();
+			}
+			topologicalOrder = new ArrayList<>(rank.length);
+			for (int v : TopologicalSort.sortByRank(rank)) {
+				topologicalOrder.add(nodes.get(v));
+			}
+		}
+		return this.topologicalOrder;
+	}
+
+	/**
+	 * @return the jobs on a cycle, each an in-neighbor of the next, once
+	 * isAcyclic() has found the graph cyclic; empty otherwise
+	 */
+	public List<Job> getCycle() {
+		return this.cycle;
+	}
+
+	/**
+	 * Perform Kahn's topological sort: repeatedly remove a start node with
+	 * its edges, by counting down the indegrees of its out-neighbors.
+	 * This takes time linear in the number of jobs plus dependencies.
+	 * The ranks of the jobs are computed along the way, and a cycle is
+	 * recorded if there is one.
+	 *
+	 * @return true iff every job could be removed
 	 */
 	public boolean isAcyclic() {
-		//to make a copy
-		Graph copy = new Graph(this);
-		Queue<Job> job = new LinkedList<>();
-		for(Job jobs: jobs.values()){
-			if(jobs.isStartNode()){
-				job.add(jobs);
-			}
-		}
-		while(!job.isEmpty()){
-			Job j = job.remove();
-			if(j.isStartNode()){
-				for(Job outJob: j.getOutNeighbors()){
-					job.add(outJob);
-					outJob.removeInNeighbor(outJob);
+		List<Job> nodes = new ArrayList<>(jobs.values());
+		int n = nodes.size();
+		Map<String, Integer> index = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			index.put(nodes.get(i).getName(), i);
+		}
+		int[] outStart = new int[n + 1];
+		List<Collection<Job>> outs = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			outs.add(nodes.get(i).getOutNeighbors());
+			outStart[i + 1] = outStart[i] + outs.get(i).size();
+		}
+		int[] outAdj = new int[outStart[n]];
+		int k = 0;
+		for (Collection<Job> out : outs) {
+			for (Job job : out) {
+				outAdj[k++] = index.get(job.getName());
+			}
+		}
+
+		TopologicalSort sort = new TopologicalSort(n, outStart, outAdj);
+		this.cycle = new ArrayList<>();
+		for (int v : sort.getCycle()) {
+			cycle.add(nodes.get(v));
+		}
+		this.topologicalOrder = new ArrayList<>();
+		for (int v : sort.getOrder()) {
+			topologicalOrder.add(nodes.get(v));
+		}
+		int[] rank = sort.getRanks();
+		for (int i = 0; i < n; i++) {
+			nodes.get(i).setRank(rank[i]);
+		}
+		return sort.isAcyclic();
+	}
+
+	/**
+	 * Add a job with no dependencies yet.
+	 *
+	 * @param name  the name of the new job
+	 * @param costs its cost on each machine
+	 * @return the jobs whose rank changed, which is just the new job
+	 * @throws IllegalArgumentException if there is a job of that name already,
+	 * or the costs are for a different number of machines
+	 */
+	public Set<Job> addJob(String name, int[] costs) {
+		if (jobs.containsKey(name)) {
+			throw new IllegalArgumentException("there is a job " + name + " already");
+		}
+		checkColumns(costs);
+		Job job = new Job(name, costs.clone());
+		job.setTail(job.getMinCost());
+		jobs.put(name, job);
+		changed(true, true);
+		Set<Job> ranked = new LinkedHashSet<>();
+		ranked.add(job);
+		return ranked;
+	}
+
+	/**
+	 * Remove a job and its dependencies. Its out-neighbors may move to
+	 * lower ranks, and the jobs above it may get shorter tails.
+	 *
+	 * @param name the name of a job
+	 * @return the jobs whose rank changed
+	 * @throws IllegalArgumentException if there is no such job
+	 */
+	public Set<Job> removeJob(String name) {
+		Job job = job(name);
+		List<Job> outs = new ArrayList<>(job.getOutNeighbors());
+		List<Job> ins = new ArrayList<>(job.getInNeighbors());
+		for (Job out : outs) {
+			out.removeInNeighbor(job);
+		}
+		for (Job in : ins) {
+			in.removeOutNeighbor(job);
+		}
+		jobs.remove(name);
+		changed(true, true);
+		Set<Job> ranked = updateRanks(outs);
+		updateTails(ins);
+		return ranked;
+	}
+
+	/**
+	 * Make one job depend on another. If the new edge goes from a lower
+	 * rank to a higher one, it cannot close a cycle; otherwise the jobs
+	 * reachable from the dependent job are searched, only up to the rank
+	 * of the other.
+	 *
+	 * @param from the name of the job that must finish first
+	 * @param to   the name of the job that depends on it
+	 * @return the jobs whose rank changed, those downstream of the edge
+	 * @throws IllegalArgumentException if a job does not exist, or the
+	 * dependency would close a cycle, in which case the graph is unchanged
+	 */
+	public Set<Job> addDependency(String from, String to) {
+		Job u = job(from);
+		Job v = job(to);
+		if (u.getOutNeighbors().contains(v)) {
+			return new LinkedHashSet<>();
+		}
+		if (v.getRank() <= u.getRank()) {
+			List<Job> path = path(v, u);
+			if (path != null) {
+				StringBuilder cycle = new StringBuilder();
+				for (Job job : path) {
+					cycle.append(" ").append(job.getName());
+				}
+				throw new IllegalArgumentException(from + " -> " + to + " would close a cycle:" + cycle);
+			}
+		}
+		u.addOutNeighbor(v);
+		v.addInNeighbor(u);
+		changed(false, false);
+		Set<Job> ranked = updateRanks(Collections.singletonList(v));
+		updateTails(Collections.singletonList(u));
+		return ranked;
+	}
+
+	/**
+	 * Drop a dependency, if there is one.
+	 *
+	 * @param from the name of the job that had to finish first
+	 * @param to   the name of the job that depended on it
+	 * @return the jobs whose rank changed, those downstream of the edge
+	 * @throws IllegalArgumentException if a job does not exist
+	 */
+	public Set<Job> removeDependency(String from, String to) {
+		Job u = job(from);
+		Job v = job(to);
+		if (!u.getOutNeighbors().contains(v)) {
+			return new LinkedHashSet<>();
+		}
+		u.removeOutNeighbor(v);
+		v.removeInNeighbor(u);
+		changed(false, false);
+		Set<Job> ranked = updateRanks(Collections.singletonList(v));
+		updateTails(Collections.singletonList(u));
+		return ranked;
+	}
+
+	/**
+	 * Change the costs of a job. Ranks count dependencies, not time, so
+	 * none change, but the job and those above it may get other tails.
+	 *
+	 * @param name  the name of a job
+	 * @param costs its new cost on each machine
+	 * @return the jobs whose rank changed, which is none
+	 * @throws IllegalArgumentException if there is no such job, or the
+	 * costs are for a different number of machines
+	 */
+	public Set<Job> setCosts(String name, int[] costs) {
+		Job job = job(name);
+		checkColumns(costs);
+		job.setCosts(costs.clone());
+		changed(true, false);
+		updateTails(Collections.singletonList(job));
+		return new LinkedHashSet<>();
+	}
+
+	private Job job(String name) {
+		Job job = jobs.get(name);
+		if (job == null) {
+			throw new IllegalArgumentException("no job " + name);
+		}
+		return job;
+	}
+
+	private void checkColumns(int[] costs) {
+		Iterator<Job> any = jobs.values().iterator();
+		int columns = any.hasNext() ? any.next().getCosts().length : costs.length;
+		if (columns != costs.length) {
+			throw new IllegalArgumentException("the jobs have costs for " + columns + " machines");
+		}
+	}
+
+	/**
+	 * Forget what a change makes stale: the compiled form always, the
+	 * machine classes if the costs changed, and the topological order if
+	 * jobs were added or removed. Otherwise the order is forgotten only
+	 * when some rank changes.
+	 *
+	 * @param costs were costs added, removed or changed
+	 * @param jobs  were jobs added or removed
+	 */
+	private void changed(boolean costs, boolean jobs) {
+		compiled = null;
+		if (costs) {
+			machineClasses = null;
+		}
+		if (jobs) {
+			topologicalOrder = null;
+		}
+	}
+
+	/**
+	 * Find a path between two jobs, looking only at jobs of lower rank than
+	 * the target, since every job on a path to it has a lower rank.
+	 *
+	 * @return the jobs on the path, or null if there is none
+	 */
+	private static List<Job> path(Job source, Job target) {
+		Map<Job, Job> parent = new HashMap<>();
+		Deque<Job> stack = new ArrayDeque<>();
+		parent.put(source, null);
+		stack.push(source);
+		while (!stack.isEmpty()) {
+			Job job = stack.pop();
+			if (job == target) {
+				LinkedList<Job> path = new LinkedList<>();
+				for (Job step = target; step != null; step = parent.get(step)) {
+					path.addFirst(step);
 				}
+				return path;
+			}
+			for (Job out : job.getOutNeighbors()) {
+				if ((out == target || out.getRank() < target.getRank()) && !parent.containsKey(out)) {
+					parent.put(out, job);
+					stack.push(out);
+				}
+			}
+		}
+		return null;
+	}
 
+	/**
+	 * Recompute the ranks of some jobs whose in-neighbors changed, and of
+	 * the jobs downstream of each one whose rank changes, and only those.
+	 * They are taken in order of their rank before the change, which the
+	 * edges still respect, so each job is looked at once, after all of its
+	 * in-neighbors that change.
+	 *
+	 * @param seeds the jobs whose in-neighbors changed
+	 * @return the jobs whose rank changed
+	 */
+	private Set<Job> updateRanks(Collection<Job> seeds) {
+		Set<Job> ranked = new LinkedHashSet<>();
+		PriorityQueue<Job> queue = new PriorityQueue<>(Comparator.comparingInt(Job::getRank));
+		Set<Job> queued = new HashSet<>(seeds);
+		queue.addAll(seeds);
+		while (!queue.isEmpty()) {
+			Job job = queue.poll();
+			int rank = 0;
+			for (Job in : job.getInNeighbors()) {
+				rank = Math.max(rank, in.getRank() + 1);
+			}
+			if (rank != job.getRank()) {
+				job.setRank(rank);
+				ranked.add(job);
+				for (Job out : job.getOutNeighbors()) {
+					if (queued.add(out)) {
+						queue.add(out);
+					}
+				}
+			}
+		}
+		if (!ranked.isEmpty()) {
+			topologicalOrder = null;
+		}
+		return ranked;
+	}
+
+	/**
+	 * Recompute the tails of some jobs whose out-neighbors or costs
+	 * changed, and of the jobs upstream of each one whose tail changes,
+	 * in decreasing rank, so each job is looked at once.
+	 *
+	 * @param seeds the jobs whose out-neighbors or costs changed
+	 */
+	private void updateTails(Collection<Job> seeds) {
+		PriorityQueue<Job> queue = new PriorityQueue<>(Comparator.comparingInt(Job::getRank).reversed());
+		Set<Job> queued = new HashSet<>(seeds);
+		queue.addAll(seeds);
+		while (!queue.isEmpty()) {
+			Job job = queue.poll();
+			int below = 0;
+			for (Job out : job.getOutNeighbors()) {
+				below = Math.max(below, out.getTail());
+			}
+			int tail = below + job.getMinCost();
+			if (tail != job.getTail()) {
+				job.setTail(tail);
+				for (Job in : job.getInNeighbors()) {
+					if (queued.add(in)) {
+						queue.add(in);
+					}
+				}
 			}
-			copy.getJobs().remove(j.getName());
 		}
-		return copy.getJobs().isEmpty();
 	}
 
 	public Graph (Graph other){ // copy constructor
@@ -125,26 +579,14 @@ public class Graph {
 	}
 
 		/**
-		 * Set the rank of each nodes in this graph using BFS.
+		 * Set the rank of each nodes in this graph.
 		 * The rank of a node is defined as the maximum path length from any staring node to the node.
+		 * The ranks come from the same single topological pass as the acyclicity test,
+		 * which is run again if it has not been run yet.
 		 */
 		public void setRankBFS () {
-			Queue<Job> Q = new LinkedList<>();
-			for(Job j: jobs.values()){
-				if(j.isStartNode()){
-					Q.add(j);
-				}
-			}
-			while (!Q.isEmpty()){
-				Job curr = Q.poll();
-				for(Job neighbor: curr.getOutNeighbors()){
-					int newRank = curr.getRank() + 1;
-					if (newRank > neighbor.getRank()){
-						neighbor.setRank(newRank) ;
-						Q.add(neighbor);
-					}
-				}
-
+			if (topologicalOrder == null || topologicalOrder.size() != jobs.size()) {
+				isAcyclic();
 			}
 		}
 
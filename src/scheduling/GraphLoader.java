@@ -0,0 +1,246 @@
+package scheduling;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads a job graph file straight into a CompiledGraph in a single pass
+ * over a buffered NIO channel, for files far too large for the Graph
+ * constructor. Lines have the form <tt>name,c0,c1,...,dep1,dep2,...</tt>.
+ * The number of cost columns is the number of numeric fields after the
+ * name on the first line, and every line must have that many. Empty
+ * fields at the end of a line are skipped, as the Graph constructor skips
+ * them; any other empty field is an error.
+ * Job names are given numbers as they are first seen, and the edges are
+ * collected as number pairs, so no Job objects are ever built. Jobs of
+ * equal rank end up numbered in the same order as by Graph.compile(), so
+ * a graph loaded either way is searched in the same order.
+ */
+public class GraphLoader {
+	/* Size of the read buffer */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/* Job numbers by name, in order of first appearance; a HashMap filled
+	   in the same order as the map of jobs in Graph, so that it lists the
+	   names in the same order */
+	private Map<String, Integer> ids = new HashMap<>();
+	private String[] names = new String[64];
+	private int[][] costs = new int[64][];
+
+	/* Edges, as parallel arrays of job numbers */
+	private int[] from = new int[256];
+	private int[] to = new int[256];
+	private int edges;
+
+	/* Cost columns per line; -1 until the first line has been read */
+	private int columns = -1;
+
+	/* Parsing state of the current line */
+	private int line = 1;
+	private int field;
+	private int job;
+	private int[] lineCosts = new int[8];
+	private byte[] token = new byte[64];
+	private int tokenLength;
+
+	/* Empty fields since the last one that was not, allowed only at the end of a line */
+	private int emptyFields;
+	private boolean numeric;
+	private long value;
+
+	private GraphLoader() {
+	}
+
+	/**
+	 * Load a graph file, in text or, if it starts with the magic bytes of
+	 * one, binary form.
+	 *
+	 * @param filename the name of a file containing jobs, costs and dependencies
+	 * @return the compiled graph, with ranks set
+	 * @throws IOException if the file cannot be read, is malformed, or is cyclic
+	 * @see BinaryGraph
+	 */
+	public static CompiledGraph load(String filename) throws IOException {
+		if (BinaryGraph.isBinary(Paths.get(filename))) {
+			return BinaryGraph.read(Paths.get(filename));
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			return load(channel);
+		}
+	}
+
+	/**
+	 * Load a graph from a channel, which is read to the end but not closed.
+	 *
+	 * @param channel a channel to read the graph text from
+	 * @return the compiled graph, with ranks set
+	 * @throws IOException if the channel cannot be read, is malformed, or is cyclic
+	 */
+	public static CompiledGraph load(ReadableByteChannel channel) throws IOException {
+		GraphLoader loader = new GraphLoader();
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (channel.read(buffer) != -1) {
+			buffer.flip();
+			loader.parse(buffer);
+			buffer.clear();
+		}
+		loader.endLine();
+		return loader.build();
+	}
+
+	/**
+	 * Feed a buffer full of bytes through the parser.
+	 */
+	private void parse(ByteBuffer buffer) throws IOException {
+		byte[] bytes = buffer.array();
+		for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+			byte b = bytes[i];
+			if (b == ',') {
+				endField();
+			} else if (b == '\n') {
+				endLine();
+			} else if (b != '\r') {
+				if (tokenLength == token.length) {
+					token = Arrays.copyOf(token, tokenLength * 2);
+				}
+				token[tokenLength++] = b;
+				if (b >= '0' && b <= '9') {
+					value = value * 10 + (b - '0');
+					numeric &= value <= Integer.MAX_VALUE;
+				} else {
+					numeric = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handle the field just read: the job name, a cost, or a dependency.
+	 */
+	private void endField() throws IOException {
+		if (tokenLength == 0 && field > 0) {
+			emptyFields++;
+			return;
+		}
+		if (tokenLength == 0 || emptyFields > 0) {
+			throw error("empty field");
+		}
+		if (field == 0) {
+			job = intern();
+		} else if (columns == -1 && numeric || field <= columns) {
+			if (!numeric) {
+				throw error("expected " + columns + " costs");
+			}
+			if (field > lineCosts.length) {
+				lineCosts = Arrays.copyOf(lineCosts, field * 2);
+			}
+			lineCosts[field - 1] = (int) value;
+		} else {
+			if (columns == -1) {
+				columns = field - 1;
+			}
+			addEdge(job, intern());
+		}
+		field++;
+		tokenLength = 0;
+		numeric = true;
+		value = 0;
+	}
+
+	/**
+	 * Finish the current line, which may be blank.
+	 */
+	private void endLine() throws IOException {
+		if (field > 0 || tokenLength > 0) {
+			if (tokenLength > 0) {
+				endField();
+			}
+			if (columns == -1) {
+				columns = field - 1;
+			}
+			if (field - 1 < columns || columns == 0) {
+				throw error("expected " + Math.max(columns, 1) + " costs");
+			}
+			costs[job] = Arrays.copyOf(lineCosts, columns);
+		}
+		line++;
+		field = 0;
+		emptyFields = 0;
+		tokenLength = 0;
+		numeric = true;
+		value = 0;
+	}
+
+	/**
+	 * @return the number of the job named by the current token
+	 */
+	private int intern() {
+		String name = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = ids.size();
+			if (id == names.length) {
+				names = Arrays.copyOf(names, id * 2);
+				costs = Arrays.copyOf(costs, id * 2);
+			}
+			names[id] = name;
+			ids.put(name, id);
+		}
+		return id;
+	}
+
+	private void addEdge(int u, int v) {
+		if (edges == from.length) {
+			from = Arrays.copyOf(from, edges * 2);
+			to = Arrays.copyOf(to, edges * 2);
+		}
+		from[edges] = u;
+		to[edges] = v;
+		edges++;
+	}
+
+	private IOException error(String message) {
+		return new IOException("line " + line + ": " + message);
+	}
+
+	/**
+	 * @return the compiled graph of everything read
+	 */
+	private CompiledGraph build() throws IOException {
+		int n = ids.size();
+		for (int i = 0; i < n; i++) {
+			if (costs[i] == null) {
+				throw new IOException("job " + names[i] + " has no line of its own");
+			}
+		}
+		// list the jobs in the order Graph does, which fromEdges keeps among equal ranks
+		String[] listedNames = new String[n];
+		int[][] listedCosts = new int[n][];
+		int[] position = new int[n];
+		int listed = 0;
+		for (int id : ids.values()) {
+			listedNames[listed] = names[id];
+			listedCosts[listed] = costs[id];
+			position[id] = listed++;
+		}
+		int[] listedFrom = new int[edges];
+		int[] listedTo = new int[edges];
+		for (int e = 0; e < edges; e++) {
+			listedFrom[e] = position[from[e]];
+			listedTo[e] = position[to[e]];
+		}
+		try {
+			return CompiledGraph.fromEdges(listedNames, listedCosts, listedFrom, listedTo, edges);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException(ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package scheduling;
+
+import backtracker.UndoableConfiguration;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A job schedule that is built and torn down in place, whatever order it
+ * assigns the jobs in.
+ */
+public interface InPlaceSchedule extends JobSchedule, UndoableConfiguration {
+	/**
+	 * @return the latest time the schedule may finish now
+	 */
+	int getLimit();
+
+	/**
+	 * Make the schedule beat, as well as the time limit, a makespan that
+	 * other searches may lower while this one runs.
+	 *
+	 * @param bound the makespan to beat, shared with the other searches
+	 */
+	void shareBound(AtomicInteger bound);
+
+	/**
+	 * @return a copy of the schedule as it is now
+	 */
+	@Override
+	InPlaceSchedule snapshot();
+}
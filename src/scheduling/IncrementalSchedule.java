@@ -0,0 +1,425 @@
+package scheduling;
+
+import viewer.Traceable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A job schedule that is built and torn down in place. Jobs are assigned
+ * in the rank order of the compiled graph's job numbers; branch i assigns
+ * the next job to machine i. Everything a step changes is recorded on a
+ * trail of arrays indexed by depth, so applying and undoing allocate
+ * nothing, and the search reads only primitive arrays.
+ */
+public class IncrementalSchedule implements InPlaceSchedule, Traceable {
+
+	private int timeLimit;
+	private int numMachines;
+
+	/* A makespan found elsewhere that the schedule must beat, or null */
+	private AtomicInteger sharedBound;
+
+	/* The jobs; job number i is the i-th to be assigned */
+	private CompiledGraph graph;
+
+	/* Current finish time of each machine */
+	private int[] machineFinish;
+
+	/* The trail: for the job assigned at each depth, its machine, its finish
+	   time, and the finish time its machine had before */
+	private int[] machineOf;
+	private int[] jobFinish;
+	private int[] previousFinish;
+	private int depth;
+
+	/* The machines the branches at each depth stand for: one per group of
+	   interchangeable machines */
+	private int[][] branchMachines;
+
+	/* For pruning, shared by snapshots: the longest cheapest path below
+	   each job's out-neighbors, the cheapest total time of the jobs from
+	   each number on, and the longest cheapest path of the whole graph */
+	private int[] successorTail;
+	private long[] remainingWork;
+	private int criticalPath;
+
+	/* The sum of the machine finish times */
+	private long busy;
+
+	/* For the state key, shared by snapshots: the jobs whose last
+	   out-neighbor is each job, those of job j from closedStart[j] */
+	private int[] closedStart;
+	private int[] closedJobs;
+
+	/* The state key but for the depth: the XOR of a term for each machine
+	   finish time and for each assigned job with unassigned out-neighbors */
+	private long key;
+
+	/**
+	 * A constructor
+	 *
+	 * @param JOBS        map
+	 * @param timeLimit   integer
+	 * @param numMachines numMachines
+	 */
+	public IncrementalSchedule(Map<String, Job> JOBS, int timeLimit, int numMachines) {
+		this(new CompiledGraph(JOBS.values()), timeLimit, numMachines);
+	}
+
+	/**
+	 * A constructor
+	 *
+	 * @param graph       the compiled job graph
+	 * @param timeLimit   integer
+	 * @param numMachines numMachines
+	 * @throws IllegalArgumentException if the graph has no costs for that many machines
+	 */
+	public IncrementalSchedule(CompiledGraph graph, int timeLimit, int numMachines) {
+		graph.checkMachines(numMachines);
+		this.graph = graph;
+		this.timeLimit = timeLimit;
+		this.numMachines = numMachines;
+
+		int n = graph.size();
+		this.machineFinish = new int[numMachines];
+		this.machineOf = new int[n];
+		this.jobFinish = new int[n];
+		this.previousFinish = new int[n];
+		this.depth = 0;
+		this.branchMachines = new int[n][numMachines];
+
+		int[] minCost = numMachines == graph.machines
+				? graph.minCost : CompiledGraph.minCosts(graph.cost, numMachines);
+		int[] tail = numMachines == graph.machines ? graph.tail : graph.tails(minCost);
+		this.successorTail = new int[n];
+		this.remainingWork = new long[n + 1];
+		for (int job = n - 1; job >= 0; job--) {
+			for (int k = graph.outStart[job]; k < graph.outStart[job + 1]; k++) {
+				successorTail[job] = Math.max(successorTail[job], tail[graph.outAdj[k]]);
+			}
+			remainingWork[job] = remainingWork[job + 1] + minCost[job];
+			criticalPath = Math.max(criticalPath, tail[job]);
+		}
+
+		// rows are sorted, so the last out-neighbor is the latest assigned
+		this.closedStart = new int[n + 1];
+		this.closedJobs = new int[n];
+		for (int job = 0; job < n; job++) {
+			if (graph.outStart[job + 1] > graph.outStart[job]) {
+				closedStart[graph.outAdj[graph.outStart[job + 1] - 1] + 1]++;
+			}
+		}
+		for (int job = 0; job < n; job++) {
+			closedStart[job + 1] += closedStart[job];
+		}
+		int[] filled = Arrays.copyOf(closedStart, n);
+		for (int job = 0; job < n; job++) {
+			if (graph.outStart[job + 1] > graph.outStart[job]) {
+				closedJobs[filled[graph.outAdj[graph.outStart[job + 1] - 1]]++] = job;
+			}
+		}
+		for (int m = 0; m < numMachines; m++) {
+			key ^= machineTerm(m, 0);
+		}
+	}
+
+	/**
+	 * A copy constructor, for snapshots; the branch tables are scratch
+	 * space and are not copied
+	 *
+	 * @param other the schedule to copy
+	 */
+	private IncrementalSchedule(IncrementalSchedule other) {
+		this.graph = other.graph;
+		this.timeLimit = other.timeLimit;
+		this.numMachines = other.numMachines;
+		this.sharedBound = other.sharedBound;
+		this.machineFinish = other.machineFinish.clone();
+		this.machineOf = other.machineOf.clone();
+		this.jobFinish = other.jobFinish.clone();
+		this.previousFinish = other.previousFinish.clone();
+		this.depth = other.depth;
+		this.branchMachines = new int[graph.size()][numMachines];
+		this.successorTail = other.successorTail;
+		this.remainingWork = other.remainingWork;
+		this.criticalPath = other.criticalPath;
+		this.busy = other.busy;
+		this.closedStart = other.closedStart;
+		this.closedJobs = other.closedJobs;
+		this.key = other.key;
+	}
+
+	/**
+	 * @return a copy of the schedule as it is now
+	 */
+	@Override
+	public IncrementalSchedule snapshot() {
+		return new IncrementalSchedule(this);
+	}
+
+	/**
+	 * Of machines that have the same costs and finish at the same time,
+	 * only the first is a branch, since the others lead to the same
+	 * schedules.
+	 *
+	 * @return the number of machines the next job may go to
+	 */
+	@Override
+	public int getBranchCount() {
+		int[] machines = branchMachines[depth];
+		int count = 0;
+		for (int m = 0; m < numMachines; m++) {
+			int c = graph.machineClass[m];
+			boolean twin = false;
+			for (int other = c; other < m && !twin; other++) {
+				twin = graph.machineClass[other] == c && machineFinish[other] == machineFinish[m];
+			}
+			if (!twin) {
+				machines[count++] = m;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Assign the next job to a machine.
+	 *
+	 * @param branch which of the machines counted by getBranchCount()
+	 */
+	@Override
+	public void apply(int branch) {
+		int job = depth;
+		int machine = branchMachines[job][branch];
+		int start = machineFinish[machine];
+		int[] inAdj = graph.inAdj;
+		for (int k = graph.inStart[job], end = graph.inStart[job + 1]; k < end; k++) {
+			if (jobFinish[inAdj[k]] > start) {
+				start = jobFinish[inAdj[k]];
+			}
+		}
+		int finish = start + graph.cost[job][machine];
+		previousFinish[job] = machineFinish[machine];
+		busy += finish - machineFinish[machine];
+		key ^= machineTerm(machine, machineFinish[machine]) ^ machineTerm(machine, finish);
+		machineFinish[machine] = finish;
+		machineOf[job] = machine;
+		jobFinish[job] = finish;
+		updateOpenJobs(job);
+		depth++;
+	}
+
+	/**
+	 * Take the last assigned job off its machine.
+	 */
+	@Override
+	public void undo() {
+		depth--;
+		int machine = machineOf[depth];
+		busy -= jobFinish[depth] - previousFinish[depth];
+		key ^= machineTerm(machine, machineFinish[machine]) ^ machineTerm(machine, previousFinish[depth]);
+		machineFinish[machine] = previousFinish[depth];
+		updateOpenJobs(depth);
+	}
+
+	/**
+	 * Toggle the key terms of the jobs that assigning or unassigning a job
+	 * opens or closes: the job itself, if it has out-neighbors, and the
+	 * jobs it is the last out-neighbor of. The same call undoes itself.
+	 *
+	 * @param job the job being assigned or unassigned
+	 */
+	private void updateOpenJobs(int job) {
+		if (graph.outStart[job + 1] > graph.outStart[job]) {
+			key ^= jobTerm(job, jobFinish[job]);
+		}
+		for (int k = closedStart[job], end = closedStart[job + 1]; k < end; k++) {
+			key ^= jobTerm(closedJobs[k], jobFinish[closedJobs[k]]);
+		}
+	}
+
+	/**
+	 * Checks that the schedule can still be completed in time, by bounds
+	 * that cost the same however many jobs there are: the graph's cheapest
+	 * critical path must fit, the last assigned job must finish in time and
+	 * leave room for the cheapest path after it, and the time left on the
+	 * machines must hold the cheapest cost of every unassigned job.
+	 *
+	 * @return boolean
+	 */
+	@Override
+	public boolean isValid() {
+		int limit = getLimit();
+		if (criticalPath > limit) {
+			return false;
+		}
+		if (depth == 0) {
+			return true;
+		}
+		int finish = jobFinish[depth - 1];
+		return finish + successorTail[depth - 1] <= limit
+				&& remainingWork[depth] <= (long) limit * numMachines - busy;
+	}
+
+	/**
+	 * Make the schedule beat, as well as the time limit, a makespan that
+	 * other searches may lower while this one runs. A configuration that
+	 * failed stays failed as the bound drops, so the search goes on as it
+	 * is, only pruning more.
+	 *
+	 * @param bound the makespan to beat, shared with the other searches
+	 */
+	@Override
+	public void shareBound(AtomicInteger bound) {
+		this.sharedBound = bound;
+	}
+
+	/**
+	 * @return the latest time the schedule may finish now
+	 */
+	@Override
+	public int getLimit() {
+		return sharedBound == null ? timeLimit : Math.min(timeLimit, sharedBound.get() - 1);
+	}
+
+	/**
+	 * @return true once every job is assigned
+	 */
+	@Override
+	public boolean isGoal() {
+		return depth == graph.size();
+	}
+
+	/**
+	 * Hash the next job, the machine finish times, and the finish times of
+	 * the assigned jobs that still have unassigned out-neighbors. Nothing
+	 * else about the assigned jobs matters to the rest of the search. The
+	 * terms are kept up to date by apply() and undo(), Zobrist style, so
+	 * this takes constant time.
+	 *
+	 * @return a 64-bit key of the current schedule
+	 */
+	@Override
+	public long getStateKey() {
+		return key ^ mix(depth);
+	}
+
+	/**
+	 * @return the key term of a machine finishing at a time
+	 */
+	private static long machineTerm(int machine, int finish) {
+		return mix(((long) machine << 32 | finish) ^ 0x9e3779b97f4a7c15L);
+	}
+
+	/**
+	 * @return the key term of an assigned job finishing at a time
+	 */
+	private static long jobTerm(int job, int finish) {
+		return mix(((long) job << 32 | finish) ^ 0x632be59bd9b4e019L);
+	}
+
+	/**
+	 * The finalizer of the 64-bit MurmurHash3, to spread each value's bits
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * @return the number of the job assigned last, or -1
+	 */
+	@Override
+	public int getLastJob() {
+		return depth - 1;
+	}
+
+	/**
+	 * @return the machine the last job was assigned to, or -1
+	 */
+	@Override
+	public int getLastMachine() {
+		return depth == 0 ? -1 : machineOf[depth - 1];
+	}
+
+	/**
+	 * @return the finish time of the last job, or 0
+	 */
+	@Override
+	public int getLastFinishTime() {
+		return depth == 0 ? 0 : jobFinish[depth - 1];
+	}
+
+	/**
+	 * @return the job names, by job number
+	 */
+	public String[] getJobNames() {
+		return graph.names.clone();
+	}
+
+	/**
+	 * @return the time the last assigned job finishes
+	 */
+	@Override
+	public int getMakespan() {
+		int makespan = 0;
+		for (int m = 0; m < numMachines; m++) {
+			makespan = Math.max(makespan, machineFinish[m]);
+		}
+		return makespan;
+	}
+
+	/**
+	 * @param job the number of an assigned job
+	 * @return the machine the job runs on
+	 */
+	@Override
+	public int getMachine(int job) {
+		return machineOf[job];
+	}
+
+	/**
+	 * @param job the number of an assigned job
+	 * @return the time the job finishes
+	 */
+	@Override
+	public int getFinishTime(int job) {
+		return jobFinish[job];
+	}
+
+	/**
+	 * @return the compiled graph the schedule is for
+	 */
+	@Override
+	public CompiledGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the number of machines
+	 */
+	@Override
+	public int getMachineCount() {
+		return numMachines;
+	}
+
+	/**
+	 * String representation, in the same form as JobSchedulingConfig
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for (int m = 0; m < numMachines; m++) {
+			string.append("\nMachine " + m + ": ");
+			for (int job = 0; job < depth; job++) {
+				if (machineOf[job] == m) {
+					string.append("(" + graph.names[job] + "," + jobFinish[job] + ")");
+				}
+			}
+		}
+		return string.toString();
+	}
+}
@@ -1,6 +1,7 @@
 package scheduling;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -23,6 +24,13 @@ public class Job {
     /* The maximum path length from any start node to this node */
     private int rank;
 
+    /* The cheapest of this job's costs */
+    private int minCost;
+
+    /* The length of the longest path from this job to an end node, this
+       job included, when every job runs on its cheapest machine */
+    private int tail;
+
     /**
      * Constructor initializes Job with empty lists of neighbors.
      * @param name the name associated with the node.
@@ -51,6 +59,7 @@ public class Job {
     public Job(Job other){
         this.name = other.name;
         this.costs = other.costs;
+        this.minCost = other.minCost;
         this.outNeighbors = new LinkedList<>(other.getOutNeighbors());
         this.inNeighbors = new LinkedList<>(other.getInNeighbors());
     }
@@ -62,6 +71,32 @@ public class Job {
     public void setCosts(int[] costs){
         this.costs = new int[costs.length];
         this.costs = costs;
+        this.minCost = Integer.MAX_VALUE;
+        for (int cost : costs) {
+            this.minCost = Math.min(this.minCost, cost);
+        }
+    }
+
+    /**
+     * @return the cheapest of this job's costs
+     */
+    public int getMinCost(){
+        return this.minCost;
+    }
+
+    /**
+     * @param tail the length of the cheapest critical path from this job
+     */
+    public void setTail(int tail){
+        this.tail = tail;
+    }
+
+    /**
+     * @return the length of the longest path from this job to an end node,
+     * this job included, when every job runs on its cheapest machine
+     */
+    public int getTail(){
+        return this.tail;
     }
 
     /**
@@ -100,6 +135,14 @@ public class Job {
     public void removeInNeighbor(Job inNode){
        this.inNeighbors.remove(inNode);
     }
+
+    /**
+     * Removes a node from this node's out-neighbors.
+     * @param outNode a node being removed from this node's out-neighbors.
+     */
+    public void removeOutNeighbor(Job outNode){
+       this.outNeighbors.remove(outNode);
+    }
     /**
      * Add an out-neighbor to this node.  Checks if already present, and does not
      * duplicate in this case.
@@ -127,19 +170,19 @@ public class Job {
      * Method to return the adjacency list for this node containing all
      * of its out-neighbors.
      *
-     * @return the list of out-neighbors of the given node
+     * @return the list of out-neighbors of the given node, a read-only view
      */
     public Collection<Job> getOutNeighbors() {
-        return new LinkedList<>(outNeighbors);
+        return Collections.unmodifiableCollection(outNeighbors);
     }
     /**
      * Method to return the adjacency list for this node containing all
      * of its in-neighbors.
      *
-     * @return the list of in-neighbors of the given node
+     * @return the list of in-neighbors of the given node, a read-only view
      */
     public Collection<Job> getInNeighbors() {
-        return new LinkedList<>(inNeighbors);
+        return Collections.unmodifiableCollection(inNeighbors);
     }
 
     /**
@@ -159,7 +202,10 @@ public class Job {
     public String toString() {
         String result;
         result = name +", ";
-        result += "cost: " + costs[0] + " " +  costs[1] + " " +  costs[2] + " ";
+        result += "cost: ";
+        for (int cost : costs) {
+            result += cost + " ";
+        }
         result += "rank: "  + rank + " ";
         //result += "pathCost: " + pathCost + " ";
         result += ", out:  ";
@@ -0,0 +1,68 @@
+package scheduling;
+
+/**
+ * Decides, at each node of a ReadySetSchedule search, the order in which
+ * the ready jobs are tried: by increasing key, ties by job number. The
+ * key is asked for afresh at every node, so it may depend on everything
+ * scheduled so far.
+ */
+public interface JobOrdering {
+	/**
+	 * @param schedule the schedule being searched, as it is at the node
+	 * @param job      a ready job
+	 * @return the job's key; jobs with smaller keys are tried first
+	 */
+	int key(ReadySetSchedule schedule, int job);
+
+	/**
+	 * The orderings that come with the solver
+	 */
+	enum Standard implements JobOrdering {
+		/**
+		 * By job number, which is the rank order
+		 */
+		BY_NUMBER {
+			@Override
+			public int key(ReadySetSchedule schedule, int job) {
+				return job;
+			}
+		},
+
+		/**
+		 * Fewest machines it can still finish on in time first, so that
+		 * jobs that are about to become impossible are settled early
+		 */
+		MOST_CONSTRAINED {
+			@Override
+			public int key(ReadySetSchedule schedule, int job) {
+				int fits = 0;
+				for (int m = 0; m < schedule.getMachineCount(); m++) {
+					if (schedule.fits(job, m)) {
+						fits++;
+					}
+				}
+				return fits;
+			}
+		},
+
+		/**
+		 * Longest cheapest path to an exit job first
+		 */
+		LONGEST_PATH {
+			@Override
+			public int key(ReadySetSchedule schedule, int job) {
+				return -schedule.getTail(job);
+			}
+		},
+
+		/**
+		 * Earliest finishing in-neighbors first
+		 */
+		EARLIEST_READY {
+			@Override
+			public int key(ReadySetSchedule schedule, int job) {
+				return schedule.getDataReady(job);
+			}
+		}
+	}
+}
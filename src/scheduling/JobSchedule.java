@@ -0,0 +1,36 @@
+package scheduling;
+
+/**
+ * An assignment of the jobs of a compiled graph to machines, however it
+ * was found: by a heuristic, as a Schedule, or by a search, as an
+ * InPlaceSchedule. Every kind prints in the same form as
+ * JobSchedulingConfig.
+ */
+public interface JobSchedule {
+	/**
+	 * @return the time the last assigned job finishes
+	 */
+	int getMakespan();
+
+	/**
+	 * @param job the number of an assigned job
+	 * @return the machine the job runs on
+	 */
+	int getMachine(int job);
+
+	/**
+	 * @param job the number of an assigned job
+	 * @return the time the job finishes
+	 */
+	int getFinishTime(int job);
+
+	/**
+	 * @return the compiled graph the schedule is for
+	 */
+	CompiledGraph getGraph();
+
+	/**
+	 * @return the number of machines
+	 */
+	int getMachineCount();
+}
@@ -1,92 +1,189 @@
 package scheduling;
 
+import backtracker.BoundedConfiguration;
 import backtracker.Configuration;
+import viewer.Traceable;
 
 import java.util.*;
 
 /**
  * A way to find the best way to schedule jobs, uses various methods to do this.
  */
-public class JobSchedulingConfig implements Configuration {
+public class JobSchedulingConfig implements BoundedConfiguration, Traceable {
 
 
 	private Map<Job, Integer> jobs;
 	private int timeLimit;
 	private ArrayList<Machine> numMachines;
-	private TreeSet<Job> tree;
+	private List<Job> order;
+	private Bounds bounds;
+	private int[] machineClasses;
+	private int next;
 	private Job current;
+	private int lastMachine = -1;
+
+	/* The sum of the machine finish times */
+	private long busy;
 
 	/**
-	 * A constructor
+	 * What the bounds need to know about the assignment order, shared by
+	 * every configuration of a search: by position in the order, the
+	 * cheapest critical path from each job, the longest of those below its
+	 * out-neighbors, the cheapest total time of the jobs from each position
+	 * on, and the longest cheapest path of the whole graph.
+	 */
+	private static class Bounds {
+		int[] tails;
+		int[] successorTails;
+		long[] remainingWork;
+		int criticalPath;
+	}
+
+	/**
+	 * A constructor. Jobs are assigned in order of rank.
 	 *
 	 * @param JOBS        map
 	 * @param timeLimit   integer
 	 * @param numMachines numMachines
+	 * @throws IllegalArgumentException if the jobs have no costs for that many machines
 	 */
 	public JobSchedulingConfig(Map<String, Job> JOBS, int timeLimit, int numMachines) {
-		this.jobs = jobs;
-		this.timeLimit = timeLimit;
-		this.tree = new TreeSet<Job>(new Comparator<Job>() {
-			@Override
-			public int compare(Job o1, Job o2) {
-				return o1.getRank() < o2.getRank() ? -1 : 1;
-			}
-		});
-		for (String j : JOBS.keySet()) {
-			tree.add(JOBS.get(j));
+		this(byRank(JOBS.values()), Graph.machineClasses(JOBS.values()), timeLimit, numMachines);
+	}
+
+	/**
+	 * A constructor. Jobs are assigned in the graph's topological order.
+	 *
+	 * @param graph       a graph whose ranks are set
+	 * @param timeLimit   integer
+	 * @param numMachines numMachines
+	 * @throws IllegalArgumentException if the jobs have no costs for that many machines
+	 */
+	public JobSchedulingConfig(Graph graph, int timeLimit, int numMachines) {
+		this(graph.getTopologicalOrder(), graph.getMachineClasses(), timeLimit, numMachines);
+	}
+
+	/**
+	 * A constructor
+	 *
+	 * @param order          the jobs, every job after its in-neighbors
+	 * @param machineClasses for each machine, the first one with the same costs
+	 * @param timeLimit      integer
+	 * @param numMachines    numMachines
+	 * @throws IllegalArgumentException if the jobs have no costs for that many machines
+	 */
+	private JobSchedulingConfig(List<Job> order, int[] machineClasses, int timeLimit, int numMachines) {
+		if (numMachines < 1 || numMachines > machineClasses.length) {
+			throw new IllegalArgumentException("machines must be from 1 to " + machineClasses.length);
 		}
+		this.jobs = new HashMap<>();
+		this.machineClasses = machineClasses;
+		this.timeLimit = timeLimit;
+		this.order = order;
+		this.next = 0;
 		this.numMachines = new ArrayList<Machine>();
 		for (int i = 0; i < numMachines; i++) {
 			this.numMachines.add(new Machine(i));
 		}
+		this.bounds = computeBounds(order, numMachines);
 
 	}
 
 	/**
-	 * A copy constructor
+	 * @return the jobs in a list sorted by rank
+	 */
+	private static List<Job> byRank(Collection<Job> jobs) {
+		List<Job> order = new ArrayList<>(jobs);
+		order.sort(Comparator.comparingInt(Job::getRank));
+		return order;
+	}
+
+	/**
+	 * A copy constructor. The assignment order is shared, everything
+	 * a successor mutates is copied.
 	 *
 	 * @param other Configuration
 	 */
 	public JobSchedulingConfig(JobSchedulingConfig other) {
-		this.jobs = new HashMap<>();
+		this.jobs = new HashMap<>(other.jobs);
+		this.timeLimit = other.timeLimit;
+		this.order = other.order;
+		this.bounds = other.bounds;
+		this.busy = other.busy;
+		this.machineClasses = other.machineClasses;
+		this.next = other.next;
 		this.current = other.current;
+		this.lastMachine = other.lastMachine;
 		this.numMachines = new ArrayList<>();
-		for (int i = 0; i < other.numMachines.size(); i++) {
-			this.numMachines.add(new Machine(i));
-			this.numMachines.get(i).setup(other.numMachines.get(i).getItems(), other.numMachines.get(i).getFinishTime());
+		for (Machine m : other.numMachines) {
+			this.numMachines.add(new Machine(m));
 		}
 
 	}
 
 	/**
-	 * Creates the different configurations
+	 * Creates the different configurations. Of machines that have the same
+	 * costs and finish at the same time, only the first gets a successor,
+	 * since the others would lead to the same schedules.
 	 *
 	 * @return list
 	 */
 	public Collection<Configuration> getSuccessors() {
-		current = tree.pollFirst();
+		Job job = order.get(next);
 		ArrayList<Configuration> successors = new ArrayList<>();
 
-		for (Machine m : numMachines) {
+		for (int i = 0; i < numMachines.size(); i++) {
+			if (hasTwinBefore(i)) {
+				continue;
+			}
 			JobSchedulingConfig copy = new JobSchedulingConfig(this);
-			m.addJob(current, jobs);
+			Machine machine = copy.numMachines.get(i);
+			int before = machine.getFinishTime();
+			machine.addJob(job, copy.jobs);
+			copy.busy += machine.getFinishTime() - before;
+			copy.current = job;
+			copy.lastMachine = i;
+			copy.next++;
 			successors.add(copy);
 		}
-		return new ArrayList<>();
+		return successors;
 
 	}
 
 	/**
-	 * checks to see if its valid
+	 * @param i a machine ID
+	 * @return true if an earlier machine is interchangeable with machine i
+	 */
+	private boolean hasTwinBefore(int i) {
+		for (int j = machineClasses[i]; j < i; j++) {
+			if (machineClasses[j] == machineClasses[i]
+					&& numMachines.get(j).getFinishTime() == numMachines.get(i).getFinishTime()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks that the schedule can still be completed in time: the graph's
+	 * cheapest critical path must fit, the last assigned job must finish in
+	 * time and leave room for the cheapest path after it, and the time left
+	 * on the machines must hold the cheapest cost of every unassigned job.
+	 * Each check takes constant time.
 	 *
 	 * @return boolean
 	 */
 	@Override
 	public boolean isValid() {
+		if (bounds.criticalPath > timeLimit) {
+			return false;
+		}
 		if (current == null) {
 			return true;
 		}
-		return this.jobs.get(current) <= timeLimit;
+		int finish = this.jobs.get(current);
+		return finish + bounds.successorTails[next - 1] <= timeLimit
+				&& bounds.remainingWork[next] <= (long) timeLimit * numMachines.size() - busy;
 	}
 
 	/**
@@ -96,10 +193,128 @@ public class JobSchedulingConfig implements Configuration {
 	 */
 	@Override
 	public boolean isGoal() {
-		if (numMachines.isEmpty()) {
-			return true;
+		return next == order.size();
+	}
+
+	/**
+	 * The makespan, i.e. the latest finish time over all machines.
+	 *
+	 * @return int
+	 */
+	@Override
+	public int getCost() {
+		int makespan = 0;
+		for (Machine m : numMachines) {
+			makespan = Math.max(makespan, m.getFinishTime());
 		}
-		return false;
+		return makespan;
+	}
+
+	/**
+	 * No schedule completing this one can finish before the current makespan,
+	 * nor before any unassigned job can start and run the cheapest critical
+	 * path below it.
+	 *
+	 * @return int
+	 */
+	@Override
+	public int getLowerBound() {
+		int bound = getCost();
+		for (int i = next; i < order.size(); i++) {
+			Job job = order.get(i);
+			int start = 0;
+			for (Job in : job.getInNeighbors()) {
+				Integer finish = jobs.get(in);
+				if (finish != null && finish > start) {
+					start = finish;
+				}
+			}
+			bound = Math.max(bound, start + bounds.tails[i]);
+		}
+		return bound;
+	}
+
+	/**
+	 * Compute the bounds of an assignment order. With every cost column in
+	 * use, the tails the graph set on the jobs are taken as they are.
+	 *
+	 * @param order the jobs, every job after its in-neighbors
+	 * @param numMachines the number of machines in use
+	 * @return the bounds, by position in the order
+	 */
+	private static Bounds computeBounds(List<Job> order, int numMachines) {
+		int n = order.size();
+		Map<Job, Integer> position = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			position.put(order.get(i), i);
+		}
+		Bounds bounds = new Bounds();
+		bounds.tails = new int[n];
+		bounds.successorTails = new int[n];
+		bounds.remainingWork = new long[n + 1];
+		for (int i = n - 1; i >= 0; i--) {
+			Job job = order.get(i);
+			int below = 0;
+			for (Job out : job.getOutNeighbors()) {
+				below = Math.max(below, bounds.tails[position.get(out)]);
+			}
+			int minCost = job.getMinCost();
+			int tail = job.getTail();
+			if (numMachines < job.getCosts().length) {
+				minCost = Integer.MAX_VALUE;
+				for (int m = 0; m < numMachines; m++) {
+					minCost = Math.min(minCost, job.getCosts()[m]);
+				}
+				tail = below + minCost;
+			}
+			bounds.successorTails[i] = below;
+			bounds.tails[i] = tail;
+			bounds.remainingWork[i] = bounds.remainingWork[i + 1] + minCost;
+			bounds.criticalPath = Math.max(bounds.criticalPath, bounds.tails[i]);
+		}
+		return bounds;
+	}
+
+	/**
+	 * @return the position in the assignment order of the job assigned last
+	 */
+	@Override
+	public int getLastJob() {
+		return next - 1;
+	}
+
+	/**
+	 * @return the machine the last job was assigned to
+	 */
+	@Override
+	public int getLastMachine() {
+		return lastMachine;
+	}
+
+	/**
+	 * @return the finish time of the last job
+	 */
+	@Override
+	public int getLastFinishTime() {
+		return current == null ? 0 : jobs.get(current);
+	}
+
+	/**
+	 * @return the job names in assignment order, as numbered by getLastJob()
+	 */
+	public String[] getJobNames() {
+		String[] names = new String[order.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = order.get(i).getName();
+		}
+		return names;
+	}
+
+	/**
+	 * @return the number of machines
+	 */
+	public int getMachineCount() {
+		return numMachines.size();
 	}
 
 	/**
@@ -111,7 +326,7 @@ public class JobSchedulingConfig implements Configuration {
 
 		for (Machine m : numMachines) {
 
-			string.append("Machine" + "(" + m.getID() + "," + m.getFinishTime() + ")" + "\n");
+			string.append("\nMachine " + m.getID() + ": " + m);
 		}
 		return string.toString();
 	}
@@ -120,7 +335,7 @@ public class JobSchedulingConfig implements Configuration {
 	 * Prints out the name in order.
 	 */
 	public void displayJobsAssignmentOrder() {
-		for(Job j: tree){
+		for(Job j: order){
 			System.out.println(j.getName());
 		}
 	}
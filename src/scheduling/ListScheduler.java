@@ -0,0 +1,306 @@
+package scheduling;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Heuristic schedulers, which build one schedule in a single pass instead
+ * of searching for one. They take each job in turn, by some priority,
+ * and put it on a machine, so they run in close to linear time and can
+ * schedule graphs far too large for the backtracker. Their makespan is
+ * also an upper bound for an exact search.
+ */
+public class ListScheduler {
+	/* Most ready jobs min-min and max-min choose among at each step */
+	private static final int WINDOW = 64;
+
+	/**
+	 * The heuristics
+	 */
+	public enum Heuristic {
+		/**
+		 * Heterogeneous earliest finish time: jobs by decreasing upward rank,
+		 * the longest path to the end by mean cost, each on the machine
+		 * where it finishes first
+		 */
+		HEFT,
+
+		/**
+		 * Jobs by rank, the longest of each rank on the critical path first,
+		 * each on the machine where it finishes first
+		 */
+		CRITICAL_PATH,
+
+		/**
+		 * Of the jobs whose in-neighbors are all scheduled, the one that can
+		 * finish first, on the machine where it does; among the lowest
+		 * ranked of them on very wide graphs
+		 */
+		MIN_MIN,
+
+		/**
+		 * Of the jobs whose in-neighbors are all scheduled, the one whose
+		 * earliest finish is latest, on the machine where it finishes first;
+		 * among the lowest ranked of them on very wide graphs
+		 */
+		MAX_MIN
+	}
+
+	private CompiledGraph graph;
+	private int numMachines;
+
+	/* Current finish time of each machine */
+	private int[] machineFinish;
+
+	/* Machine and finish time of each scheduled job */
+	private int[] machineOf;
+	private int[] finish;
+
+	/* The jobs in the order they were scheduled */
+	private int[] sequence;
+	private int scheduled;
+
+	private ListScheduler(CompiledGraph graph, int numMachines) {
+		graph.checkMachines(numMachines);
+		this.graph = graph;
+		this.numMachines = numMachines;
+		int n = graph.size();
+		this.machineFinish = new int[numMachines];
+		this.machineOf = new int[n];
+		this.finish = new int[n];
+		this.sequence = new int[n];
+	}
+
+	/**
+	 * Schedule a graph with one heuristic.
+	 *
+	 * @param graph       the compiled job graph
+	 * @param numMachines the number of machines, at most the number of cost columns
+	 * @param heuristic   which heuristic
+	 * @return the schedule
+	 * @throws IllegalArgumentException if the graph has no costs for that many machines
+	 */
+	public static Schedule schedule(CompiledGraph graph, int numMachines, Heuristic heuristic) {
+		ListScheduler scheduler = new ListScheduler(graph, numMachines);
+		switch (heuristic) {
+			case HEFT:
+				scheduler.inOrder(scheduler.upwardRankOrder());
+				break;
+			case CRITICAL_PATH:
+				scheduler.inOrder(scheduler.criticalPathOrder());
+				break;
+			case MIN_MIN:
+				scheduler.readyFirst(false);
+				break;
+			default:
+				scheduler.readyFirst(true);
+				break;
+		}
+		return new Schedule(graph, numMachines, heuristic.name(),
+				scheduler.machineOf, scheduler.finish, scheduler.sequence);
+	}
+
+	/**
+	 * Schedule a graph with every heuristic and keep the shortest schedule.
+	 *
+	 * @param graph       the compiled job graph
+	 * @param numMachines the number of machines, at most the number of cost columns
+	 * @return the schedule with the smallest makespan
+	 * @throws IllegalArgumentException if the graph has no costs for that many machines
+	 */
+	public static Schedule best(CompiledGraph graph, int numMachines) {
+		Schedule best = null;
+		for (Heuristic heuristic : Heuristic.values()) {
+			Schedule schedule = schedule(graph, numMachines, heuristic);
+			if (best == null || schedule.getMakespan() < best.getMakespan()) {
+				best = schedule;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Schedule the jobs in a given topological order, each on the machine
+	 * where it finishes first.
+	 */
+	private void inOrder(int[] order) {
+		for (int job : order) {
+			int ready = dataReady(job);
+			int machine = 0;
+			int best = Integer.MAX_VALUE;
+			for (int m = 0; m < numMachines; m++) {
+				int f = Math.max(machineFinish[m], ready) + graph.cost[job][m];
+				if (f < best) {
+					best = f;
+					machine = m;
+				}
+			}
+			assign(job, machine, best);
+		}
+	}
+
+	/**
+	 * Schedule the ready job that finishes first (min-min) or last
+	 * (max-min) on its best machine, until none is left. Only the WINDOW
+	 * ready jobs of lowest rank are candidates, so a step costs the same
+	 * however wide the graph is; the others wait in a queue by job number.
+	 * Each candidate's best machine is remembered; since only the chosen
+	 * machine's finish time grows, only the candidates whose best machine
+	 * it was are looked at again.
+	 *
+	 * @param latest pick the job whose earliest finish is latest
+	 */
+	private void readyFirst(boolean latest) {
+		int n = graph.size();
+		int[] indegree = new int[n];
+		int[] bestMachine = new int[n];
+		int[] bestFinish = new int[n];
+		int[] readyTime = new int[n];
+		PriorityQueue<Integer> waiting = new PriorityQueue<>();
+		for (int job = 0; job < n; job++) {
+			indegree[job] = graph.inStart[job + 1] - graph.inStart[job];
+			if (indegree[job] == 0) {
+				waiting.add(job);
+			}
+		}
+		int[] window = new int[WINDOW];
+		int count = 0;
+		while (count > 0 || !waiting.isEmpty()) {
+			while (count < WINDOW && !waiting.isEmpty()) {
+				int job = waiting.poll();
+				window[count++] = job;
+				readyTime[job] = dataReady(job);
+				earliestFinish(job, readyTime[job], bestMachine, bestFinish);
+			}
+			int pick = 0;
+			for (int i = 1; i < count; i++) {
+				int a = bestFinish[window[i]];
+				int b = bestFinish[window[pick]];
+				boolean better = latest ? a > b : a < b;
+				if (better || a == b && window[i] < window[pick]) {
+					pick = i;
+				}
+			}
+			int job = window[pick];
+			window[pick] = window[--count];
+			int machine = bestMachine[job];
+			assign(job, machine, bestFinish[job]);
+
+			for (int i = 0; i < count; i++) {
+				if (bestMachine[window[i]] == machine) {
+					earliestFinish(window[i], readyTime[window[i]], bestMachine, bestFinish);
+				}
+			}
+			for (int k = graph.outStart[job]; k < graph.outStart[job + 1]; k++) {
+				if (--indegree[graph.outAdj[k]] == 0) {
+					waiting.add(graph.outAdj[k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the machine where a job would finish first.
+	 */
+	private void earliestFinish(int job, int ready, int[] bestMachine, int[] bestFinish) {
+		int best = Integer.MAX_VALUE;
+		for (int m = 0; m < numMachines; m++) {
+			int f = Math.max(machineFinish[m], ready) + graph.cost[job][m];
+			if (f < best) {
+				best = f;
+				bestMachine[job] = m;
+			}
+		}
+		bestFinish[job] = best;
+	}
+
+	/**
+	 * @return the time the last in-neighbor of a job finishes
+	 */
+	private int dataReady(int job) {
+		int ready = 0;
+		for (int k = graph.inStart[job]; k < graph.inStart[job + 1]; k++) {
+			ready = Math.max(ready, finish[graph.inAdj[k]]);
+		}
+		return ready;
+	}
+
+	private void assign(int job, int machine, int finishTime) {
+		machineFinish[machine] = finishTime;
+		machineOf[job] = machine;
+		finish[job] = finishTime;
+		sequence[scheduled++] = job;
+	}
+
+	/**
+	 * The HEFT order: by decreasing upward rank, the sum of the costs over
+	 * the machines (their mean, scaled) along the longest path to an exit
+	 * job. A job's upward rank is at least that of its out-neighbors, and
+	 * ties go to the lower job number, so the order is topological.
+	 */
+	private int[] upwardRankOrder() {
+		int n = graph.size();
+		int[] upward = new int[n];
+		for (int job = n - 1; job >= 0; job--) {
+			int longest = 0;
+			for (int k = graph.outStart[job]; k < graph.outStart[job + 1]; k++) {
+				longest = Math.max(longest, upward[graph.outAdj[k]]);
+			}
+			int total = 0;
+			for (int m = 0; m < numMachines; m++) {
+				total += graph.cost[job][m];
+			}
+			upward[job] = longest + total;
+		}
+		long[] keys = new long[n];
+		for (int job = 0; job < n; job++) {
+			keys[job] = (long) (Integer.MAX_VALUE - upward[job]) << 32 | job;
+		}
+		Arrays.sort(keys);
+		return jobsOf(keys);
+	}
+
+	/**
+	 * The critical path order: by rank, which job numbers already follow,
+	 * and within a rank by decreasing tail, the longest path to an exit
+	 * job by cheapest cost.
+	 */
+	private int[] criticalPathOrder() {
+		int n = graph.size();
+		int[] tail = new int[n];
+		for (int job = n - 1; job >= 0; job--) {
+			int longest = 0;
+			for (int k = graph.outStart[job]; k < graph.outStart[job + 1]; k++) {
+				longest = Math.max(longest, tail[graph.outAdj[k]]);
+			}
+			int cheapest = Integer.MAX_VALUE;
+			for (int m = 0; m < numMachines; m++) {
+				cheapest = Math.min(cheapest, graph.cost[job][m]);
+			}
+			tail[job] = longest + cheapest;
+		}
+		long[] keys = new long[n];
+		for (int job = 0; job < n; job++) {
+			keys[job] = (long) (Integer.MAX_VALUE - tail[job]) << 32 | job;
+		}
+		for (int start = 0, end; start < n; start = end) {
+			end = start + 1;
+			while (end < n && graph.rank[end] == graph.rank[start]) {
+				end++;
+			}
+			Arrays.sort(keys, start, end);
+		}
+		return jobsOf(keys);
+	}
+
+	/**
+	 * @return the job numbers in the low halves of sorted keys
+	 */
+	private static int[] jobsOf(long[] keys) {
+		int[] jobs = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			jobs[i] = (int) keys[i];
+		}
+		return jobs;
+	}
+}
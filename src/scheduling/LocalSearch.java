@@ -0,0 +1,409 @@
+package scheduling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Improves a complete schedule by simulated annealing for as long as it is
+ * given. A move either puts a job on another machine or swaps the machines
+ * of two jobs. The jobs keep the order of the starting schedule, which is
+ * topological, and every machine runs its jobs in that order, so no move
+ * can make a schedule impossible.<br>
+ * <br>
+ * A move is evaluated by recomputing the finish times of only the jobs it
+ * can delay or hasten: the moved jobs, their new and old followers on the
+ * machines, and from there the jobs downstream whose finish time actually
+ * changes. A rejected move restores just those finish times.<br>
+ * <br>
+ * Several searches may run on threads of their own, with different seeds;
+ * the best schedule any of them finds is shared. The searches run for a
+ * time, not a number of moves, so a seed fixes the moves tried but not
+ * how many are tried: two runs with the same seed can end with different
+ * schedules, the more likely the more threads there are and the busier
+ * the machine.
+ */
+public class LocalSearch {
+	/* Moves between looks at the clock */
+	private static final int CHECK_EVERY = 256;
+
+	/* Starting and final temperature, as fractions of the starting makespan */
+	private static final double START_TEMPERATURE = 0.05;
+	private static final double END_TEMPERATURE = 0.0005;
+
+	private CompiledGraph graph;
+	private int numMachines;
+	private int n;
+
+	/* What the improved schedules are called */
+	private String name;
+
+	/* Position of each job in the fixed order, and the job at each position */
+	private int[] position;
+	private int[] order;
+
+	/* Machine and finish time of each job */
+	private int[] machineOf;
+	private int[] finish;
+
+	/* The positions of the jobs on each machine, sorted, the first
+	   machineSize[m] entries of machines[m] */
+	private int[][] machines;
+	private int[] machineSize;
+
+	/* Jobs waiting to be recomputed, a binary heap by position */
+	private int[] heap;
+	private int heapSize;
+	private boolean[] queued;
+
+	/* Jobs whose finish time the current move changed, and their old finish times */
+	private int[] changedJobs;
+	private int[] changedFinish;
+	private int changed;
+
+	private SplittableRandom random;
+
+	/**
+	 * Start a search from a schedule.
+	 */
+	private LocalSearch(Schedule start, long seed) {
+		this.graph = start.getGraph();
+		this.numMachines = start.getMachineCount();
+		this.n = graph.size();
+		this.name = start.getHeuristic() + "+LS";
+		this.order = start.getSequence();
+		this.position = new int[n];
+		this.machineOf = new int[n];
+		this.finish = new int[n];
+		this.machines = new int[numMachines][16];
+		this.machineSize = new int[numMachines];
+		for (int p = 0; p < n; p++) {
+			int job = order[p];
+			position[job] = p;
+			machineOf[job] = start.getMachine(job);
+			finish[job] = start.getFinishTime(job);
+			add(machineOf[job], p);
+		}
+		this.heap = new int[n];
+		this.queued = new boolean[n];
+		this.changedJobs = new int[n];
+		this.changedFinish = new int[n];
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Improve a schedule for a while on one thread.
+	 *
+	 * @param start  a complete schedule
+	 * @param millis how long to search
+	 * @param seed   the seed of the random moves
+	 * @return the best schedule found, which may be the starting one
+	 */
+	public static Schedule improve(Schedule start, long millis, long seed) {
+		AtomicReference<Schedule> best = new AtomicReference<>(start);
+		new LocalSearch(start, seed).anneal(System.nanoTime() + millis * 1_000_000, best);
+		return best.get();
+	}
+
+	/**
+	 * Improve a schedule for a while with searches on several threads,
+	 * seeded one after another. If the calling thread is interrupted, the
+	 * searches are stopped early, and the interrupt is kept.
+	 *
+	 * @param start   a complete schedule
+	 * @param millis  how long to search
+	 * @param threads the number of searches
+	 * @param seed    the seed of the first search
+	 * @return the best schedule any search found, which may be the starting one
+	 * @throws RuntimeException whatever a search failed with first, once
+	 * every search has stopped
+	 */
+	public static Schedule improve(Schedule start, long millis, int threads, long seed) {
+		AtomicReference<Schedule> best = new AtomicReference<>(start);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		long deadline = System.nanoTime() + millis * 1_000_000;
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			LocalSearch search = new LocalSearch(start, seed + i);
+			Thread worker = new Thread(() -> search.anneal(deadline, best), "local-search-" + i);
+			worker.setUncaughtExceptionHandler((thread, ex) -> {
+				failure.compareAndSet(null, ex);
+				for (Thread other : workers) {
+					other.interrupt();
+				}
+			});
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		boolean interrupted = false;
+		for (Thread worker : workers) {
+			while (worker.isAlive()) {
+				try {
+					worker.join();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+					for (Thread other : workers) {
+						other.interrupt();
+					}
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		Throwable first = failure.get();
+		if (first instanceof Error) {
+			throw (Error) first;
+		} else if (first != null) {
+			throw first instanceof RuntimeException ? (RuntimeException) first : new IllegalStateException(first);
+		}
+		return best.get();
+	}
+
+	/**
+	 * Anneal until the deadline. A move that makes the schedule no worse
+	 * is always kept, and a worse one with a probability that falls with
+	 * how much worse it is and with the temperature, which cools
+	 * geometrically over the time given.
+	 */
+	private void anneal(long deadline, AtomicReference<Schedule> best) {
+		if (n == 0 || numMachines < 2) {
+			return;
+		}
+		long begin = System.nanoTime();
+		long current = energy();
+		long bestEnergy = current;
+		double scale = Math.max(1, makespan()) * (double) numMachines;
+		double hot = START_TEMPERATURE * scale;
+		double cold = END_TEMPERATURE * scale;
+		double temperature = hot;
+		for (long step = 0; ; step++) {
+			if (step % CHECK_EVERY == 0) {
+				long now = System.nanoTime();
+				if (now >= deadline || Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				temperature = hot * Math.pow(cold / hot, (double) (now - begin) / (deadline - begin));
+			}
+			int job = random.nextInt(n);
+			int other = -1;
+			int machine;
+			if (random.nextBoolean()) {
+				machine = random.nextInt(numMachines - 1);
+				if (machine >= machineOf[job]) {
+					machine++;
+				}
+			} else {
+				other = random.nextInt(n);
+				machine = machineOf[other];
+				if (machine == machineOf[job]) {
+					continue;
+				}
+			}
+			int from = machineOf[job];
+			changed = 0;
+			move(job, machine);
+			if (other >= 0) {
+				move(other, from);
+			}
+			propagate();
+			long next = energy();
+			if (next <= current || random.nextDouble() < Math.exp((current - next) / temperature)) {
+				current = next;
+				if (current < bestEnergy) {
+					bestEnergy = current;
+					share(best);
+				}
+			} else {
+				if (other >= 0) {
+					relink(other, machine);
+				}
+				relink(job, from);
+				for (int i = changed - 1; i >= 0; i--) {
+					finish[changedJobs[i]] = changedFinish[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put a job on a machine, and queue what it changes.
+	 */
+	private void move(int job, int machine) {
+		int oldNext = higher(machineOf[job], position[job]);
+		relink(job, machine);
+		int newNext = higher(machine, position[job]);
+		enqueue(job);
+		if (oldNext >= 0) {
+			enqueue(order[oldNext]);
+		}
+		if (newNext >= 0) {
+			enqueue(order[newNext]);
+		}
+	}
+
+	/**
+	 * Move a job to a machine without recomputing anything.
+	 */
+	private void relink(int job, int machine) {
+		remove(machineOf[job], position[job]);
+		add(machine, position[job]);
+		machineOf[job] = machine;
+	}
+
+	/**
+	 * Put a position on a machine, keeping its positions sorted.
+	 */
+	private void add(int machine, int p) {
+		int size = machineSize[machine];
+		int i = -Arrays.binarySearch(machines[machine], 0, size, p) - 1;
+		if (size == machines[machine].length) {
+			machines[machine] = Arrays.copyOf(machines[machine], size * 2);
+		}
+		System.arraycopy(machines[machine], i, machines[machine], i + 1, size - i);
+		machines[machine][i] = p;
+		machineSize[machine]++;
+	}
+
+	/**
+	 * Take a position off the machine it is on.
+	 */
+	private void remove(int machine, int p) {
+		int size = machineSize[machine];
+		int i = Arrays.binarySearch(machines[machine], 0, size, p);
+		System.arraycopy(machines[machine], i + 1, machines[machine], i, size - i - 1);
+		machineSize[machine]--;
+	}
+
+	/**
+	 * @return the position after p on the machine p is on, or -1
+	 */
+	private int higher(int machine, int p) {
+		int i = Arrays.binarySearch(machines[machine], 0, machineSize[machine], p) + 1;
+		return i < machineSize[machine] ? machines[machine][i] : -1;
+	}
+
+	/**
+	 * @return the position before p on the machine p is on, or -1
+	 */
+	private int lower(int machine, int p) {
+		int i = Arrays.binarySearch(machines[machine], 0, machineSize[machine], p) - 1;
+		return i >= 0 ? machines[machine][i] : -1;
+	}
+
+	/**
+	 * Recompute queued jobs in order, queueing the out-neighbors and the
+	 * machine follower of every job whose finish time changes.
+	 */
+	private void propagate() {
+		while (heapSize > 0) {
+			int job = dequeue();
+			int start = 0;
+			int previous = lower(machineOf[job], position[job]);
+			if (previous >= 0) {
+				start = finish[order[previous]];
+			}
+			for (int k = graph.inStart[job]; k < graph.inStart[job + 1]; k++) {
+				start = Math.max(start, finish[graph.inAdj[k]]);
+			}
+			int f = start + graph.cost[job][machineOf[job]];
+			if (f != finish[job]) {
+				changedJobs[changed] = job;
+				changedFinish[changed] = finish[job];
+				changed++;
+				finish[job] = f;
+				for (int k = graph.outStart[job]; k < graph.outStart[job + 1]; k++) {
+					enqueue(graph.outAdj[k]);
+				}
+				int next = higher(machineOf[job], position[job]);
+				if (next >= 0) {
+					enqueue(order[next]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The makespan first, then the sum of the machines' finish times, so
+	 * that moves which free a machine without shortening the schedule yet
+	 * still count as progress.
+	 */
+	private long energy() {
+		long sum = 0;
+		int makespan = 0;
+		for (int m = 0; m < numMachines; m++) {
+			int f = machineFinish(m);
+			sum += f;
+			makespan = Math.max(makespan, f);
+		}
+		return makespan * (long) numMachines + sum;
+	}
+
+	private int makespan() {
+		int makespan = 0;
+		for (int m = 0; m < numMachines; m++) {
+			makespan = Math.max(makespan, machineFinish(m));
+		}
+		return makespan;
+	}
+
+	/**
+	 * @return the finish time of a machine's last job
+	 */
+	private int machineFinish(int machine) {
+		int size = machineSize[machine];
+		return size == 0 ? 0 : finish[order[machines[machine][size - 1]]];
+	}
+
+	/**
+	 * Offer the current schedule as the shared best, if it is shorter.
+	 */
+	private void share(AtomicReference<Schedule> best) {
+		int makespan = makespan();
+		Schedule shared = best.get();
+		while (makespan < shared.getMakespan()) {
+			Schedule mine = new Schedule(graph, numMachines, name, machineOf.clone(), finish.clone(), order);
+			if (best.compareAndSet(shared, mine)) {
+				return;
+			}
+			shared = best.get();
+		}
+	}
+
+	private void enqueue(int job) {
+		if (queued[job]) {
+			return;
+		}
+		queued[job] = true;
+		int i = heapSize++;
+		while (i > 0 && position[heap[(i - 1) / 2]] > position[job]) {
+			heap[i] = heap[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = job;
+	}
+
+	private int dequeue() {
+		int top = heap[0];
+		queued[top] = false;
+		int last = heap[--heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && position[heap[child + 1]] < position[heap[child]]) {
+				child++;
+			}
+			if (position[heap[child]] >= position[last]) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return top;
+	}
+}
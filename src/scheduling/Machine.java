@@ -23,6 +23,16 @@ public class Machine {
 		this.items = new ArrayList<>();
 	}
 
+	/**
+	 * A copy constructor
+	 * @param other the machine to copy
+	 */
+	public Machine(Machine other) {
+		this.ID = other.ID;
+		this.time = other.time;
+		this.items = new ArrayList<>(other.items);
+	}
+
 	/**
 	 * Get the ID of the MAHCINE
 	 * @return id
@@ -0,0 +1,51 @@
+package scheduling;
+
+/**
+ * Decides, at each node of a ReadySetSchedule search, the order in which
+ * the machines are tried for a ready job: by increasing key, ties by
+ * machine ID.
+ */
+public interface MachineOrdering {
+	/**
+	 * @param schedule the schedule being searched, as it is at the node
+	 * @param job      a ready job
+	 * @param machine  a machine ID
+	 * @return the machine's key; machines with smaller keys are tried first
+	 */
+	int key(ReadySetSchedule schedule, int job, int machine);
+
+	/**
+	 * The orderings that come with the solver
+	 */
+	enum Standard implements MachineOrdering {
+		/**
+		 * By machine ID
+		 */
+		BY_NUMBER {
+			@Override
+			public int key(ReadySetSchedule schedule, int job, int machine) {
+				return machine;
+			}
+		},
+
+		/**
+		 * The machine where the job would finish first, first
+		 */
+		EARLIEST_FINISH {
+			@Override
+			public int key(ReadySetSchedule schedule, int job, int machine) {
+				return schedule.getFinishIfPut(job, machine);
+			}
+		},
+
+		/**
+		 * The machine that is free first, first
+		 */
+		LEAST_LOADED {
+			@Override
+			public int key(ReadySetSchedule schedule, int job, int machine) {
+				return schedule.getMachineFinish(machine);
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package scheduling;
+
+/**
+ * Which jobs of a compiled graph are scheduled and which are ready, i.e.
+ * unscheduled with every in-neighbor scheduled. Both sets are bitsets, one
+ * bit per job number, and each job keeps a count of its unscheduled
+ * in-neighbors, so scheduling or unscheduling a job costs time in its
+ * out-degree only. The finish times of the scheduled jobs are kept too,
+ * for the earliest start of a ready job.
+ */
+public class ReadySet {
+	private CompiledGraph graph;
+
+	/* One bit per job number, 64 to a word */
+	private long[] scheduled;
+	private long[] ready;
+
+	/* Unscheduled in-neighbors of each job */
+	private int[] remaining;
+
+	/* Finish time of each scheduled job */
+	private int[] finish;
+
+	private int scheduledCount;
+	private int readyCount;
+
+	/**
+	 * Start with nothing scheduled, and the start jobs ready.
+	 *
+	 * @param graph the compiled job graph
+	 */
+	public ReadySet(CompiledGraph graph) {
+		this.graph = graph;
+		int n = graph.size();
+		this.scheduled = new long[(n + 63) >>> 6];
+		this.ready = new long[(n + 63) >>> 6];
+		this.remaining = new int[n];
+		this.finish = new int[n];
+		for (int job = 0; job < n; job++) {
+			remaining[job] = graph.inStart[job + 1] - graph.inStart[job];
+			if (remaining[job] == 0) {
+				ready[job >>> 6] |= 1L << job;
+				readyCount++;
+			}
+		}
+	}
+
+	/**
+	 * A copy constructor
+	 *
+	 * @param other the set to copy
+	 */
+	public ReadySet(ReadySet other) {
+		this.graph = other.graph;
+		this.scheduled = other.scheduled.clone();
+		this.ready = other.ready.clone();
+		this.remaining = other.remaining.clone();
+		this.finish = other.finish.clone();
+		this.scheduledCount = other.scheduledCount;
+		this.readyCount = other.readyCount;
+	}
+
+	/**
+	 * Schedule a ready job, making ready each out-neighbor it was the last
+	 * unscheduled in-neighbor of.
+	 *
+	 * @param job        a ready job
+	 * @param finishTime the time it finishes
+	 */
+	public void schedule(int job, int finishTime) {
+		ready[job >>> 6] &= ~(1L << job);
+		scheduled[job >>> 6] |= 1L << job;
+		finish[job] = finishTime;
+		readyCount--;
+		scheduledCount++;
+		int[] outAdj = graph.outAdj;
+		for (int k = graph.outStart[job], end = graph.outStart[job + 1]; k < end; k++) {
+			int out = outAdj[k];
+			if (--remaining[out] == 0) {
+				ready[out >>> 6] |= 1L << out;
+				readyCount++;
+			}
+		}
+	}
+
+	/**
+	 * Take back the scheduling of a job whose out-neighbors are all
+	 * unscheduled, as the last scheduled job is; it is ready again.
+	 *
+	 * @param job a scheduled job
+	 */
+	public void unschedule(int job) {
+		int[] outAdj = graph.outAdj;
+		for (int k = graph.outStart[job], end = graph.outStart[job + 1]; k < end; k++) {
+			int out = outAdj[k];
+			if (remaining[out]++ == 0) {
+				ready[out >>> 6] &= ~(1L << out);
+				readyCount--;
+			}
+		}
+		scheduled[job >>> 6] &= ~(1L << job);
+		ready[job >>> 6] |= 1L << job;
+		scheduledCount--;
+		readyCount++;
+	}
+
+	/**
+	 * @param job a job number
+	 * @return true if the job is scheduled
+	 */
+	public boolean isScheduled(int job) {
+		return (scheduled[job >>> 6] & 1L << job) != 0;
+	}
+
+	/**
+	 * @param job a job number
+	 * @return true if the job is unscheduled and all its in-neighbors are scheduled
+	 */
+	public boolean isReady(int job) {
+		return (ready[job >>> 6] & 1L << job) != 0;
+	}
+
+	/**
+	 * Iterate over the ready jobs in increasing order:
+	 * <tt>for (int job = set.nextReady(0); job >= 0; job = set.nextReady(job + 1))</tt>
+	 *
+	 * @param from the smallest job number to consider
+	 * @return the first ready job from there, or -1 if there is none
+	 */
+	public int nextReady(int from) {
+		int n = graph.size();
+		if (from >= n) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = ready[w] & -1L << from;
+		while (word == 0) {
+			if (++w == ready.length) {
+				return -1;
+			}
+			word = ready[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * @return the number of ready jobs
+	 */
+	public int getReadyCount() {
+		return readyCount;
+	}
+
+	/**
+	 * @return the number of scheduled jobs
+	 */
+	public int getScheduledCount() {
+		return scheduledCount;
+	}
+
+	/**
+	 * @param job a scheduled job
+	 * @return the time it finishes
+	 */
+	public int getFinishTime(int job) {
+		return finish[job];
+	}
+
+	/**
+	 * @param job a ready job
+	 * @return the time its last in-neighbor finishes
+	 */
+	public int getDataReady(int job) {
+		int start = 0;
+		int[] inAdj = graph.inAdj;
+		for (int k = graph.inStart[job], end = graph.inStart[job + 1]; k < end; k++) {
+			start = Math.max(start, finish[inAdj[k]]);
+		}
+		return start;
+	}
+
+	/**
+	 * @param job a job number
+	 * @return true if some out-neighbor of the job is unscheduled
+	 */
+	public boolean hasUnscheduledOut(int job) {
+		for (int k = graph.outStart[job], end = graph.outStart[job + 1]; k < end; k++) {
+			if (!isScheduled(graph.outAdj[k])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the words of the scheduled bitset; not to be changed
+	 */
+	long[] getScheduledWords() {
+		return scheduled;
+	}
+}
@@ -0,0 +1,547 @@
+package scheduling;
+
+import viewer.Traceable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A job schedule that is built and torn down in place, where the next job
+ * may be any ready one rather than the next in a fixed order: each branch
+ * puts one ready job on one machine. The ready jobs are tracked by a
+ * ReadySet, and everything a step changes is recorded on a trail indexed
+ * by depth, as in IncrementalSchedule. Different orders of the same steps
+ * reach the same schedule, so this is best searched with a transposition
+ * table.<br>
+ * <br>
+ * The order the branches are tried in is decided at each node by a
+ * JobOrdering, for the ready jobs, and a MachineOrdering, for the machines
+ * of each job. Branches that cannot finish in time are left out, and a
+ * node where some ready job fits on no machine has no branches at all,
+ * since machines only get busier.
+ */
+public class ReadySetSchedule implements InPlaceSchedule, Traceable {
+
+	private int timeLimit;
+	private int numMachines;
+
+	/* A makespan found elsewhere that the schedule must beat, or null */
+	private AtomicInteger sharedBound;
+
+	private CompiledGraph graph;
+	private ReadySet ready;
+
+	private JobOrdering jobOrdering;
+	private MachineOrdering machineOrdering;
+
+	/* Current finish time of each machine */
+	private int[] machineFinish;
+
+	/* Machine of each scheduled job */
+	private int[] machineOf;
+
+	/* The trail: the job scheduled at each depth, and the finish time its
+	   machine had before */
+	private int[] jobAt;
+	private int[] previousFinish;
+	private int depth;
+
+	/* The branches of every depth on the current path, each a job number
+	   times the machine count plus a machine; those of depth d start at
+	   branchStart[d] */
+	private int[] branches;
+	private int[] branchStart;
+
+	/* Scratch space for sorting the ready jobs and the machines by key,
+	   each key in the high half and the number in the low half */
+	private long[] jobKeys;
+	private long[] machineKeys;
+
+	/* For pruning, shared by snapshots, as in IncrementalSchedule */
+	private int[] tail;
+	private int[] successorTail;
+	private int[] minCost;
+	private int criticalPath;
+
+	/* The sum of the machine finish times, and of the cheapest costs of
+	   the unscheduled jobs */
+	private long busy;
+	private long remainingWork;
+
+	/* Unscheduled out-neighbors of each job */
+	private int[] openOuts;
+
+	/* The state key but for the depth: the XOR of a term for each machine
+	   finish time, for each scheduled job, and for each scheduled job with
+	   unscheduled out-neighbors */
+	private long key;
+
+	/**
+	 * A constructor
+	 *
+	 * @param JOBS        map
+	 * @param timeLimit   integer
+	 * @param numMachines numMachines
+	 */
+	public ReadySetSchedule(Map<String, Job> JOBS, int timeLimit, int numMachines) {
+		this(new CompiledGraph(JOBS.values()), timeLimit, numMachines);
+	}
+
+	/**
+	 * A constructor. Ready jobs are tried by job number, and machines by ID.
+	 *
+	 * @param graph       the compiled job graph
+	 * @param timeLimit   integer
+	 * @param numMachines numMachines
+	 */
+	public ReadySetSchedule(CompiledGraph graph, int timeLimit, int numMachines) {
+		this(graph, timeLimit, numMachines, JobOrdering.Standard.BY_NUMBER, MachineOrdering.Standard.BY_NUMBER);
+	}
+
+	/**
+	 * A constructor
+	 *
+	 * @param graph           the compiled job graph
+	 * @param timeLimit       integer
+	 * @param numMachines     numMachines
+	 * @param jobOrdering     the order ready jobs are tried in at each node
+	 * @param machineOrdering the order machines are tried in for each job
+	 * @throws IllegalArgumentException if the graph has no costs for that many machines
+	 */
+	public ReadySetSchedule(CompiledGraph graph, int timeLimit, int numMachines,
+							JobOrdering jobOrdering, MachineOrdering machineOrdering) {
+		graph.checkMachines(numMachines);
+		this.graph = graph;
+		this.timeLimit = timeLimit;
+		this.numMachines = numMachines;
+		this.jobOrdering = jobOrdering;
+		this.machineOrdering = machineOrdering;
+
+		int n = graph.size();
+		this.ready = new ReadySet(graph);
+		this.machineFinish = new int[numMachines];
+		this.machineOf = new int[n];
+		this.jobAt = new int[n];
+		this.previousFinish = new int[n];
+		this.depth = 0;
+		this.branches = new int[Math.max(16, numMachines * 4)];
+		this.branchStart = new int[n + 1];
+		this.jobKeys = new long[n];
+		this.machineKeys = new long[numMachines];
+
+		this.minCost = numMachines == graph.machines
+				? graph.minCost : CompiledGraph.minCosts(graph.cost, numMachines);
+		this.tail = numMachines == graph.machines ? graph.tail : graph.tails(minCost);
+		this.successorTail = new int[n];
+		for (int job = 0; job < n; job++) {
+			for (int k = graph.outStart[job]; k < graph.outStart[job + 1]; k++) {
+				successorTail[job] = Math.max(successorTail[job], tail[graph.outAdj[k]]);
+			}
+			remainingWork += minCost[job];
+			criticalPath = Math.max(criticalPath, tail[job]);
+		}
+		this.openOuts = new int[n];
+		for (int job = 0; job < n; job++) {
+			openOuts[job] = graph.outStart[job + 1] - graph.outStart[job];
+		}
+		for (int m = 0; m < numMachines; m++) {
+			key ^= machineTerm(m, 0);
+		}
+	}
+
+	/**
+	 * A copy constructor, for snapshots; the branch stack is scratch space
+	 * and is not copied
+	 *
+	 * @param other the schedule to copy
+	 */
+	private ReadySetSchedule(ReadySetSchedule other) {
+		this.graph = other.graph;
+		this.timeLimit = other.timeLimit;
+		this.numMachines = other.numMachines;
+		this.sharedBound = other.sharedBound;
+		this.ready = new ReadySet(other.ready);
+		this.jobOrdering = other.jobOrdering;
+		this.machineOrdering = other.machineOrdering;
+		this.machineFinish = other.machineFinish.clone();
+		this.machineOf = other.machineOf.clone();
+		this.jobAt = other.jobAt.clone();
+		this.previousFinish = other.previousFinish.clone();
+		this.depth = other.depth;
+		this.branches = new int[other.branches.length];
+		this.branchStart = new int[other.branchStart.length];
+		this.jobKeys = new long[other.jobKeys.length];
+		this.machineKeys = new long[numMachines];
+		this.tail = other.tail;
+		this.successorTail = other.successorTail;
+		this.minCost = other.minCost;
+		this.criticalPath = other.criticalPath;
+		this.busy = other.busy;
+		this.remainingWork = other.remainingWork;
+		this.openOuts = other.openOuts.clone();
+		this.key = other.key;
+	}
+
+	/**
+	 * @return a copy of the schedule as it is now
+	 */
+	@Override
+	public ReadySetSchedule snapshot() {
+		return new ReadySetSchedule(this);
+	}
+
+	/**
+	 * Every ready job on every machine it fits on, in the order of the job
+	 * and machine orderings, except that of machines that have the same
+	 * costs and finish at the same time only the first is a branch, since
+	 * the others lead to the same schedules.
+	 *
+	 * @return the number of job and machine pairs
+	 */
+	@Override
+	public int getBranchCount() {
+		int start = branchStart[depth];
+		branchStart[depth + 1] = start;
+		int needed = start + ready.getReadyCount() * numMachines;
+		if (needed > branches.length) {
+			branches = Arrays.copyOf(branches, Math.max(needed, branches.length * 2));
+		}
+		int jobs = 0;
+		for (int job = ready.nextReady(0); job >= 0; job = ready.nextReady(job + 1)) {
+			jobKeys[jobs++] = (long) jobOrdering.key(this, job) << 32 | job;
+		}
+		Arrays.sort(jobKeys, 0, jobs);
+		int count = 0;
+		for (int i = 0; i < jobs; i++) {
+			int job = (int) jobKeys[i];
+			int machines = 0;
+			for (int m = 0; m < numMachines; m++) {
+				if (fits(job, m) && !hasTwinBefore(m)) {
+					machineKeys[machines++] = (long) machineOrdering.key(this, job, m) << 32 | m;
+				}
+			}
+			if (machines == 0) {
+				// the job can never be scheduled in time from here
+				return 0;
+			}
+			Arrays.sort(machineKeys, 0, machines);
+			for (int k = 0; k < machines; k++) {
+				branches[start + count++] = job * numMachines + (int) machineKeys[k];
+			}
+		}
+		branchStart[depth + 1] = start + count;
+		return count;
+	}
+
+	/**
+	 * @param job     a ready job
+	 * @param machine a machine ID
+	 * @return true if the job, put on the machine now, leaves time for the
+	 * cheapest path after it
+	 */
+	public boolean fits(int job, int machine) {
+		return getFinishIfPut(job, machine) + successorTail[job] <= getLimit();
+	}
+
+	/**
+	 * @param job     a ready job
+	 * @param machine a machine ID
+	 * @return the time the job would finish if it were put on the machine now
+	 */
+	public int getFinishIfPut(int job, int machine) {
+		return Math.max(machineFinish[machine], ready.getDataReady(job)) + graph.cost[job][machine];
+	}
+
+	/**
+	 * @param job a ready job
+	 * @return the time its last in-neighbor finishes
+	 */
+	public int getDataReady(int job) {
+		return ready.getDataReady(job);
+	}
+
+	/**
+	 * @param machine a machine ID
+	 * @return the time the machine's last job finishes
+	 */
+	public int getMachineFinish(int machine) {
+		return machineFinish[machine];
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the longest path from the job to an exit job, the job
+	 * included, when every job runs on its cheapest machine in use
+	 */
+	public int getTail(int job) {
+		return tail[job];
+	}
+
+	/**
+	 * @param m a machine ID
+	 * @return true if an earlier machine is interchangeable with machine m
+	 */
+	private boolean hasTwinBefore(int m) {
+		int c = graph.machineClass[m];
+		for (int other = c; other < m; other++) {
+			if (graph.machineClass[other] == c && machineFinish[other] == machineFinish[m]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Put a ready job on a machine.
+	 *
+	 * @param branch which of the pairs counted by getBranchCount()
+	 */
+	@Override
+	public void apply(int branch) {
+		int pair = branches[branchStart[depth] + branch];
+		int job = pair / numMachines;
+		int machine = pair % numMachines;
+		int start = Math.max(machineFinish[machine], ready.getDataReady(job));
+		int finish = start + graph.cost[job][machine];
+		previousFinish[depth] = machineFinish[machine];
+		busy += finish - machineFinish[machine];
+		remainingWork -= minCost[job];
+		key ^= machineTerm(machine, machineFinish[machine]) ^ machineTerm(machine, finish);
+		machineFinish[machine] = finish;
+		machineOf[job] = machine;
+		jobAt[depth] = job;
+		ready.schedule(job, finish);
+		updateOpenJobs(job, -1);
+		depth++;
+	}
+
+	/**
+	 * Take the last scheduled job off its machine.
+	 */
+	@Override
+	public void undo() {
+		depth--;
+		int job = jobAt[depth];
+		int machine = machineOf[job];
+		updateOpenJobs(job, 1);
+		ready.unschedule(job);
+		busy -= ready.getFinishTime(job) - previousFinish[depth];
+		remainingWork += minCost[job];
+		key ^= machineTerm(machine, machineFinish[machine]) ^ machineTerm(machine, previousFinish[depth]);
+		machineFinish[machine] = previousFinish[depth];
+	}
+
+	/**
+	 * Toggle the key terms that scheduling or unscheduling a job changes:
+	 * its own, and those of the in-neighbors it is the last unscheduled
+	 * out-neighbor of.
+	 *
+	 * @param job    the job being scheduled or unscheduled
+	 * @param change -1 when scheduling it, 1 when unscheduling it
+	 */
+	private void updateOpenJobs(int job, int change) {
+		key ^= scheduledTerm(job);
+		if (openOuts[job] > 0) {
+			key ^= jobTerm(job, ready.getFinishTime(job));
+		}
+		int[] inAdj = graph.inAdj;
+		for (int k = graph.inStart[job], end = graph.inStart[job + 1]; k < end; k++) {
+			int in = inAdj[k];
+			if (openOuts[in] + (change < 0 ? change : 0) == 0) {
+				key ^= jobTerm(in, ready.getFinishTime(in));
+			}
+			openOuts[in] += change;
+		}
+	}
+
+	/**
+	 * Checks that the schedule can still be completed in time, by the same
+	 * constant time bounds as IncrementalSchedule.
+	 *
+	 * @return boolean
+	 */
+	@Override
+	public boolean isValid() {
+		int limit = getLimit();
+		if (criticalPath > limit) {
+			return false;
+		}
+		if (depth == 0) {
+			return true;
+		}
+		int job = jobAt[depth - 1];
+		return ready.getFinishTime(job) + successorTail[job] <= limit
+				&& remainingWork <= (long) limit * numMachines - busy;
+	}
+
+	/**
+	 * Make the schedule beat, as well as the time limit, a makespan that
+	 * other searches may lower while this one runs. A configuration that
+	 * failed stays failed as the bound drops, so the search goes on as it
+	 * is, only pruning more.
+	 *
+	 * @param bound the makespan to beat, shared with the other searches
+	 */
+	@Override
+	public void shareBound(AtomicInteger bound) {
+		this.sharedBound = bound;
+	}
+
+	/**
+	 * @return the latest time the schedule may finish now
+	 */
+	@Override
+	public int getLimit() {
+		return sharedBound == null ? timeLimit : Math.min(timeLimit, sharedBound.get() - 1);
+	}
+
+	/**
+	 * @return true once every job is scheduled
+	 */
+	@Override
+	public boolean isGoal() {
+		return depth == graph.size();
+	}
+
+	/**
+	 * Hash which jobs are scheduled, the machine finish times, and the
+	 * finish times of the scheduled jobs that still have unscheduled
+	 * out-neighbors. Nothing else about the scheduled jobs matters to the
+	 * rest of the search, whatever order they were scheduled in. The terms
+	 * are kept up to date by apply() and undo(), Zobrist style, so this
+	 * takes constant time.
+	 *
+	 * @return a 64-bit key of the current schedule
+	 */
+	@Override
+	public long getStateKey() {
+		return key ^ mix(depth);
+	}
+
+	/**
+	 * @return the key term of a machine finishing at a time
+	 */
+	private static long machineTerm(int machine, int finish) {
+		return mix(((long) machine << 32 | finish) ^ 0x9e3779b97f4a7c15L);
+	}
+
+	/**
+	 * @return the key term of a scheduled job
+	 */
+	private static long scheduledTerm(int job) {
+		return mix(job ^ 0xd6e8feb86659fd93L);
+	}
+
+	/**
+	 * @return the key term of a scheduled job finishing at a time
+	 */
+	private static long jobTerm(int job, int finish) {
+		return mix(((long) job << 32 | finish) ^ 0x632be59bd9b4e019L);
+	}
+
+	/**
+	 * The finalizer of the 64-bit MurmurHash3, to spread each value's bits
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * @return the number of the job scheduled last, or -1
+	 */
+	@Override
+	public int getLastJob() {
+		return depth == 0 ? -1 : jobAt[depth - 1];
+	}
+
+	/**
+	 * @return the machine the last job was put on, or -1
+	 */
+	@Override
+	public int getLastMachine() {
+		return depth == 0 ? -1 : machineOf[jobAt[depth - 1]];
+	}
+
+	/**
+	 * @return the finish time of the last job, or 0
+	 */
+	@Override
+	public int getLastFinishTime() {
+		return depth == 0 ? 0 : ready.getFinishTime(jobAt[depth - 1]);
+	}
+
+	/**
+	 * @return the job names, by job number
+	 */
+	public String[] getJobNames() {
+		return graph.names.clone();
+	}
+
+	/**
+	 * @return the time the last scheduled job finishes
+	 */
+	@Override
+	public int getMakespan() {
+		int makespan = 0;
+		for (int m = 0; m < numMachines; m++) {
+			makespan = Math.max(makespan, machineFinish[m]);
+		}
+		return makespan;
+	}
+
+	/**
+	 * @param job the number of a scheduled job
+	 * @return the machine the job runs on
+	 */
+	@Override
+	public int getMachine(int job) {
+		return machineOf[job];
+	}
+
+	/**
+	 * @param job the number of a scheduled job
+	 * @return the time the job finishes
+	 */
+	@Override
+	public int getFinishTime(int job) {
+		return ready.getFinishTime(job);
+	}
+
+	/**
+	 * @return the compiled graph the schedule is for
+	 */
+	@Override
+	public CompiledGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the number of machines
+	 */
+	@Override
+	public int getMachineCount() {
+		return numMachines;
+	}
+
+	/**
+	 * String representation, in the same form as JobSchedulingConfig
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for (int m = 0; m < numMachines; m++) {
+			string.append("\nMachine " + m + ": ");
+			for (int d = 0; d < depth; d++) {
+				int job = jobAt[d];
+				if (machineOf[job] == m) {
+					string.append("(" + graph.names[job] + "," + ready.getFinishTime(job) + ")");
+				}
+			}
+		}
+		return string.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package scheduling;
+
+/**
+ * A complete assignment of the jobs of a compiled graph to machines, as
+ * built by a heuristic. Each machine runs its jobs one after another in
+ * the order they were assigned, and a job starts once its machine is free
+ * and its in-neighbors have finished.
+ */
+public class Schedule implements JobSchedule {
+	private CompiledGraph graph;
+	private int numMachines;
+	private String heuristic;
+
+	/* Machine and finish time of each job, by job number */
+	private int[] machineOf;
+	private int[] finish;
+
+	/* The jobs in the order they were assigned */
+	private int[] sequence;
+
+	private int makespan;
+
+	/**
+	 * A constructor
+	 *
+	 * @param graph       the compiled job graph
+	 * @param numMachines the number of machines
+	 * @param heuristic   the name of the heuristic that built the schedule
+	 * @param machineOf   machine of each job
+	 * @param finish      finish time of each job
+	 * @param sequence    the jobs in the order they were assigned
+	 */
+	Schedule(CompiledGraph graph, int numMachines, String heuristic,
+			 int[] machineOf, int[] finish, int[] sequence) {
+		this.graph = graph;
+		this.numMachines = numMachines;
+		this.heuristic = heuristic;
+		this.machineOf = machineOf;
+		this.finish = finish;
+		this.sequence = sequence;
+		for (int f : finish) {
+			makespan = Math.max(makespan, f);
+		}
+	}
+
+	/**
+	 * @return the name of the heuristic that built the schedule
+	 */
+	public String getHeuristic() {
+		return heuristic;
+	}
+
+	/**
+	 * @return the time the last job finishes
+	 */
+	@Override
+	public int getMakespan() {
+		return makespan;
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the machine the job runs on
+	 */
+	@Override
+	public int getMachine(int job) {
+		return machineOf[job];
+	}
+
+	/**
+	 * @param job a job number
+	 * @return the time the job finishes
+	 */
+	@Override
+	public int getFinishTime(int job) {
+		return finish[job];
+	}
+
+	/**
+	 * @return the jobs in the order they were assigned, which is topological;
+	 * not to be changed
+	 */
+	int[] getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the compiled graph the schedule is for
+	 */
+	@Override
+	public CompiledGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the number of machines
+	 */
+	@Override
+	public int getMachineCount() {
+		return numMachines;
+	}
+
+	/**
+	 * String representation, in the same form as JobSchedulingConfig
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for (int m = 0; m < numMachines; m++) {
+			string.append("\nMachine ").append(m).append(": ");
+			for (int job : sequence) {
+				if (machineOf[job] == m) {
+					string.append('(').append(graph.names[job]).append(',').append(finish[job]).append(')');
+				}
+			}
+		}
+		return string.toString();
+	}
+}
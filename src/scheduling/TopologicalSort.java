@@ -0,0 +1,159 @@
+package scheduling;
+
+import java.util.Arrays;
+
+/**
+ * Kahn's topological sort of a graph whose nodes are numbered 0 to n-1
+ * and whose out-neighbors are given in compressed sparse row form.
+ * A single pass, linear in nodes plus edges, finds whether the graph is
+ * acyclic and the rank of every node, i.e. the length of the longest path
+ * from any start node to it. If there is a cycle, one cycle is found.
+ */
+public class TopologicalSort {
+	/* The nodes in nondecreasing rank, ties broken by node number */
+	private int[] order;
+
+	/* Rank of each node */
+	private int[] rank;
+
+	/* The nodes of one cycle, each an in-neighbor of the next; empty if acyclic */
+	private int[] cycle;
+
+	/**
+	 * Sort a graph.
+	 *
+	 * @param n        the number of nodes
+	 * @param outStart where each node's out-neighbors start in outAdj; n+1 entries
+	 * @param outAdj   the out-neighbors of all nodes, end to end
+	 */
+	public TopologicalSort(int n, int[] outStart, int[] outAdj) {
+		int[] indegree = new int[n];
+		for (int k = 0; k < outStart[n]; k++) {
+			indegree[outAdj[k]]++;
+		}
+		int[] queue = new int[n];
+		int tail = 0;
+		for (int v = 0; v < n; v++) {
+			if (indegree[v] == 0) {
+				queue[tail++] = v;
+			}
+		}
+		this.rank = new int[n];
+		for (int head = 0; head < tail; head++) {
+			int u = queue[head];
+			for (int k = outStart[u]; k < outStart[u + 1]; k++) {
+				int v = outAdj[k];
+				if (rank[u] + 1 > rank[v]) {
+					rank[v] = rank[u] + 1;
+				}
+				if (--indegree[v] == 0) {
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		if (tail < n) {
+			this.order = new int[0];
+			this.cycle = findCycle(n, outStart, outAdj, indegree);
+		} else {
+			this.order = sortByRank(rank);
+			this.cycle = new int[0];
+		}
+	}
+
+	/**
+	 * @return true iff the graph has no cycle
+	 */
+	public boolean isAcyclic() {
+		return cycle.length == 0;
+	}
+
+	/**
+	 * @return the nodes in a topological order of nondecreasing rank;
+	 * empty if the graph is cyclic
+	 */
+	public int[] getOrder() {
+		return order;
+	}
+
+	/**
+	 * @return the rank of each node; meaningless if the graph is cyclic
+	 */
+	public int[] getRanks() {
+		return rank;
+	}
+
+	/**
+	 * @return the nodes of a cycle, each an in-neighbor of the next and the
+	 * last an in-neighbor of the first; empty if the graph is acyclic
+	 */
+	public int[] getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * Stable counting sort of the nodes by rank.
+	 *
+	 * @param rank the rank of each node
+	 * @return the nodes in nondecreasing rank
+	 */
+	static int[] sortByRank(int[] rank) {
+		int n = rank.length;
+		int[] count = new int[n + 1];
+		for (int r : rank) {
+			count[r + 1]++;
+		}
+		for (int r = 0; r < n; r++) {
+			count[r + 1] += count[r];
+		}
+		int[] sorted = new int[n];
+		for (int v = 0; v < n; v++) {
+			sorted[count[rank[v]]++] = v;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Find a cycle among the nodes Kahn's pass could not remove, which are
+	 * those left with a positive indegree. A depth first search over them,
+	 * kept on an explicit stack, stops at the first edge back into the stack.
+	 */
+	private static int[] findCycle(int n, int[] outStart, int[] outAdj, int[] indegree) {
+		final int UNSEEN = 0, ON_STACK = 1, DONE = 2;
+		int[] state = new int[n];
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		for (int root = 0; root < n; root++) {
+			if (indegree[root] == 0 || state[root] != UNSEEN) {
+				continue;
+			}
+			int top = 0;
+			stack[0] = root;
+			next[root] = outStart[root];
+			state[root] = ON_STACK;
+			while (top >= 0) {
+				int u = stack[top];
+				if (next[u] == outStart[u + 1]) {
+					state[u] = DONE;
+					top--;
+					continue;
+				}
+				int v = outAdj[next[u]++];
+				if (indegree[v] == 0 || state[v] == DONE) {
+					continue;
+				}
+				if (state[v] == ON_STACK) {
+					int from = top;
+					while (stack[from] != v) {
+						from--;
+					}
+					return Arrays.copyOfRange(stack, from, top + 1);
+				}
+				stack[++top] = v;
+				next[v] = outStart[v];
+				state[v] = ON_STACK;
+			}
+		}
+		return new int[0];
+	}
+}
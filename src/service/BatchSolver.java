@@ -0,0 +1,320 @@
+package service;
+
+import backtracker.Backtracker;
+import backtracker.SearchMetrics;
+import backtracker.TranspositionTable;
+import scheduling.*;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves many scheduling problems in one run: every combination of graph
+ * file, time limit and machine count listed in a manifest. Each graph file
+ * is parsed once, however many combinations use it, and the combinations
+ * are solved concurrently by a fixed number of workers. The results are
+ * written in manifest order, as CSV, or as JSON lines if the output file
+ * name ends in <tt>.jsonl</tt>.<br>
+ * <br>
+ * <tt>$ java service.BatchSolver manifest [output [threads]]</tt><br>
+ * <br>
+ * Each manifest line is <tt>graphFile,timeLimit,machines[,mode]</tt>, where
+ * timeLimit may be a range <tt>low..high</tt> to sweep every limit in it,
+ * and mode is <tt>incremental</tt> (the default), <tt>heuristic</tt> or
+ * <tt>improve</tt>, as for ScheduleMain. Blank lines and lines starting
+ * with <tt>#</tt> are skipped.
+ */
+public class BatchSolver {
+    /*
+     * Most failed configurations each incremental search remembers
+     */
+    private static final int TABLE_CAPACITY = 1 << 18;
+
+    /*
+     * How long the improve mode searches, in milliseconds
+     */
+    private static final long IMPROVE_MILLIS = 1000;
+
+    /*
+     * Seed of the improve mode, the same for every combination, so that a
+     * sweep of time limits compares like with like
+     */
+    private static final long IMPROVE_SEED = 0;
+
+    /**
+     * One combination to solve
+     */
+    private static class Problem {
+        final String graphFile;
+        final int timeLimit;
+        final int machines;
+        final String mode;
+
+        Problem(String graphFile, int timeLimit, int machines, String mode) {
+            this.graphFile = graphFile;
+            this.timeLimit = timeLimit;
+            this.machines = machines;
+            this.mode = mode;
+        }
+    }
+
+    /**
+     * What came of solving one combination
+     */
+    private static class Result {
+        final Problem problem;
+        String status;
+        int makespan = -1;
+        long nodes;
+        double millis;
+        String message = "";
+
+        Result(Problem problem) {
+            this.problem = problem;
+        }
+    }
+
+    /* The compiled graphs by file, parsed by whichever worker needs them first */
+    private final ConcurrentHashMap<String, Future<CompiledGraph>> graphs = new ConcurrentHashMap<>();
+
+    private final ExecutorService workers;
+
+    /**
+     * Create a solver with a fixed number of workers.
+     *
+     * @param threads number of combinations solved at once
+     */
+    public BatchSolver(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, (task) -> {
+            Thread thread = new Thread(task, "batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read a manifest.
+     *
+     * @param filename the manifest file
+     * @return the combinations it lists, in order
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    private static List<Problem> readManifest(String filename) throws IOException {
+        List<Problem> problems = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s*,\\s*");
+                if (fields.length != 3 && fields.length != 4) {
+                    throw new IOException(filename + " line " + number + ": expected graphFile,timeLimit,machines[,mode]");
+                }
+                try {
+                    int low, high;
+                    int range = fields[1].indexOf("..");
+                    if (range >= 0) {
+                        low = Integer.parseInt(fields[1].substring(0, range));
+                        high = Integer.parseInt(fields[1].substring(range + 2));
+                    } else {
+                        low = high = Integer.parseInt(fields[1]);
+                    }
+                    int machines = Integer.parseInt(fields[2]);
+                    String mode = fields.length == 4 ? fields[3] : "incremental";
+                    for (int limit = low; limit <= high; limit++) {
+                        problems.add(new Problem(fields[0], limit, machines, mode));
+                    }
+                } catch (NumberFormatException ex) {
+                    throw new IOException(filename + " line " + number + ": " + ex.getMessage());
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Solve combinations concurrently and write each result as soon as it
+     * and all those before it are done.
+     *
+     * @param problems the combinations
+     * @param out where the results go
+     * @param json write JSON lines instead of CSV
+     */
+    private void run(List<Problem> problems, PrintWriter out, boolean json) throws InterruptedException {
+        List<Future<Result>> results = new ArrayList<>();
+        for (Problem problem : problems) {
+            results.add(workers.submit(() -> solve(problem)));
+        }
+        if (!json) {
+            out.println("graph,timeLimit,machines,mode,status,makespan,nodes,millis,message");
+        }
+        for (Future<Result> future : results) {
+            try {
+                write(future.get(), out, json);
+            } catch (ExecutionException ex) {
+                // solve() reports its own failures, so this is a bug
+                throw new IllegalStateException(ex.getCause());
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Solve one combination.
+     */
+    private Result solve(Problem problem) {
+        Result result = new Result(problem);
+        long start = System.nanoTime();
+        try {
+            CompiledGraph graph = graph(problem.graphFile);
+            if (problem.machines > graph.getMachineCount()) {
+                throw new IllegalArgumentException("the graph has costs for " + graph.getMachineCount() + " machines");
+            }
+            if (problem.mode.equals("heuristic") || problem.mode.equals("improve")) {
+                Schedule schedule = ListScheduler.best(graph, problem.machines);
+                if (problem.mode.equals("improve")) {
+                    schedule = LocalSearch.improve(schedule, IMPROVE_MILLIS, IMPROVE_SEED);
+                }
+                result.status = schedule.getMakespan() <= problem.timeLimit ? "solved" : "no solution";
+                if (schedule.getMakespan() <= problem.timeLimit) {
+                    result.makespan = schedule.getMakespan();
+                }
+            } else if (problem.mode.equals("incremental")) {
+                SearchMetrics metrics = new SearchMetrics(graph.size() + 1);
+                IncrementalSchedule schedule = new IncrementalSchedule(graph, problem.timeLimit, problem.machines);
+                boolean solved = new Backtracker(false, metrics)
+                        .solveInPlaceIterative(schedule, new TranspositionTable(TABLE_CAPACITY));
+                result.nodes = metrics.getNodesExpanded();
+                result.status = solved ? "solved" : "no solution";
+                if (solved) {
+                    result.makespan = schedule.getMakespan();
+                }
+            } else {
+                throw new IllegalArgumentException("unknown mode " + problem.mode);
+            }
+        } catch (NoSuchFileException ex) {
+            result.status = "error";
+            result.message = "no such file " + ex.getMessage();
+        } catch (IOException | RuntimeException ex) {
+            result.status = "error";
+            result.message = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+        }
+        result.millis = (System.nanoTime() - start) / 1e6;
+        return result;
+    }
+
+    /**
+     * @return the compiled graph of a file, parsed on first use
+     */
+    private CompiledGraph graph(String file) throws IOException {
+        String key = Paths.get(file).toAbsolutePath().normalize().toString();
+        FutureTask<CompiledGraph> task = new FutureTask<>(() -> GraphLoader.load(file));
+        Future<CompiledGraph> cached = graphs.putIfAbsent(key, task);
+        if (cached == null) {
+            cached = task;
+            task.run();
+        }
+        try {
+            return cached.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while loading " + file);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static void write(Result result, PrintWriter out, boolean json) {
+        Problem problem = result.problem;
+        if (json) {
+            out.printf("{\"graph\":%s,\"timeLimit\":%d,\"machines\":%d,\"mode\":%s,\"status\":%s,"
+                            + "\"makespan\":%s,\"nodes\":%d,\"millis\":%.3f,\"message\":%s}%n",
+                    jsonString(problem.graphFile), problem.timeLimit, problem.machines,
+                    jsonString(problem.mode), jsonString(result.status),
+                    result.makespan < 0 ? "null" : String.valueOf(result.makespan),
+                    result.nodes, result.millis, jsonString(result.message));
+        } else {
+            out.printf("%s,%d,%d,%s,%s,%s,%d,%.3f,%s%n",
+                    csvField(problem.graphFile), problem.timeLimit, problem.machines,
+                    csvField(problem.mode), result.status,
+                    result.makespan < 0 ? "" : String.valueOf(result.makespan),
+                    result.nodes, result.millis, csvField(result.message));
+        }
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Release the workers.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Run a manifest.
+     *
+     * @param args the manifest, then optionally the output file (standard
+     *  output if absent or "-") and the number of workers
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: java service.BatchSolver manifest [output [threads]]");
+            return;
+        }
+        List<Problem> problems = readManifest(args[0]);
+        String output = args.length > 1 ? args[1] : "-";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        BatchSolver solver = new BatchSolver(threads);
+        Writer writer = output.equals("-") ? new OutputStreamWriter(System.out) : new FileWriter(output);
+        PrintWriter out = new PrintWriter(writer);
+        try {
+            solver.run(problems, out, output.endsWith(".jsonl"));
+        } finally {
+            solver.shutdown();
+            if (output.equals("-")) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+    }
+}
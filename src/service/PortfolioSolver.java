@@ -0,0 +1,287 @@
+package service;
+
+import backtracker.Backtracker;
+import backtracker.CancellationToken;
+import backtracker.SearchMetrics;
+import backtracker.SolveLimits;
+import backtracker.SolveResult;
+import backtracker.TranspositionTable;
+import backtracker.UndoableConfiguration;
+import scheduling.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Races differently configured searches for the shortest schedule within a
+ * time limit, each on a thread of its own, since which one does best on a
+ * graph cannot be told beforehand:<ul>
+ * <li>local search, improving the best heuristic schedule in short rounds
+ *  with a new seed each round;</li>
+ * <li>the fixed rank order of IncrementalSchedule;</li>
+ * <li>ReadySetSchedule with several job and machine orderings.</li>
+ * </ul>
+ * The best makespan found so far is shared through an AtomicInteger that
+ * every exact search prunes against while it runs, so a schedule one of
+ * them finds makes the others look only for better ones. A search that
+ * finds a schedule publishes it and searches again below it.<br>
+ * <br>
+ * The race ends as soon as one result is proven: a ready-set search, which
+ * can reach every schedule, runs out of configurations, proving that no
+ * schedule beats the best one found, or that there is none within the
+ * limit. The other searches are then cancelled. The fixed rank order
+ * reaches only some schedules, so running out proves nothing and that
+ * search just drops out. If nothing is proven by the deadline, the best
+ * schedule found is the answer. If a search fails, the race is stopped and
+ * the failure thrown from solve().
+ */
+public class PortfolioSolver {
+    /*
+     * How long each round of local search runs, in milliseconds
+     */
+    private static final long ROUND_MILLIS = 100;
+
+    /*
+     * Most failed configurations each exact search remembers
+     */
+    private static final int TABLE_CAPACITY = 1 << 18;
+
+    /**
+     * What the race found
+     */
+    public static class Outcome {
+        private final JobSchedule schedule;
+        private final int makespan;
+        private final String winner;
+        private final boolean proven;
+        private final long nodes;
+
+        private Outcome(JobSchedule schedule, int makespan, String winner, boolean proven, long nodes) {
+            this.schedule = schedule;
+            this.makespan = makespan;
+            this.winner = winner;
+            this.proven = proven;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return the best schedule found within the time limit, or null if
+         * none was
+         */
+        public JobSchedule getSchedule() {
+            return schedule;
+        }
+
+        /**
+         * @return the makespan of the schedule, or -1 if there is none
+         */
+        public int getMakespan() {
+            return makespan;
+        }
+
+        /**
+         * @return the search that found the schedule, or that proved there is none
+         */
+        public String getWinner() {
+            return winner;
+        }
+
+        /**
+         * @return true if the schedule is proven shortest, or its absence
+         * proven; false if the deadline came first
+         */
+        public boolean isProven() {
+            return proven;
+        }
+
+        /**
+         * @return the configurations the exact searches explored, together
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public String toString() {
+            String result = schedule == null ? "no schedule" : "makespan " + makespan;
+            return result + (proven ? ", proven by " : ", best found, by ") + winner + " after " + nodes + " configurations";
+        }
+    }
+
+    private final CompiledGraph graph;
+    private final int timeLimit;
+    private final int machines;
+
+    /* The makespan to beat: the best found so far, or one past the time limit */
+    private final AtomicInteger bound;
+
+    /* Shared by the exact searches, or null */
+    private final SearchMetrics metrics;
+
+    private final CancellationToken token = new CancellationToken();
+    private final LongAdder nodes = new LongAdder();
+
+    /* The best schedule so far and who found it, and the result once proven */
+    private JobSchedule best;
+    private String bestBy;
+    private String provenBy;
+
+    /**
+     * Set up a race.
+     *
+     * @param graph     the compiled job graph
+     * @param timeLimit the latest any job may finish
+     * @param machines  the number of machines
+     * @param metrics   counters the exact searches share, or null
+     * @throws IllegalArgumentException if the graph has no costs for that many machines
+     */
+    public PortfolioSolver(CompiledGraph graph, int timeLimit, int machines, SearchMetrics metrics) {
+        if (machines < 1 || machines > graph.getMachineCount()) {
+            throw new IllegalArgumentException("machines must be from 1 to " + graph.getMachineCount());
+        }
+        this.graph = graph;
+        this.timeLimit = timeLimit;
+        this.machines = machines;
+        this.metrics = metrics;
+        this.bound = new AtomicInteger(timeLimit == Integer.MAX_VALUE ? timeLimit : timeLimit + 1);
+    }
+
+    /**
+     * Run the race.
+     *
+     * @param millis the most time to give it
+     * @return the best schedule found and whether it is proven best
+     * @throws InterruptedException if interrupted while waiting for the race
+     * @throws RuntimeException whatever a search failed with first; the
+     * others are cancelled
+     */
+    public Outcome solve(long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        SolveLimits limits = SolveLimits.NONE.withDeadline(deadline).withToken(token);
+
+        List<Runnable> racers = new ArrayList<>();
+        racers.add(() -> improve(deadline));
+        racers.add(() -> search("rank order", false, limits, () -> new IncrementalSchedule(graph, timeLimit, machines)));
+        racers.add(() -> search(JobOrdering.Standard.MOST_CONSTRAINED, MachineOrdering.Standard.EARLIEST_FINISH, limits));
+        racers.add(() -> search(JobOrdering.Standard.LONGEST_PATH, MachineOrdering.Standard.EARLIEST_FINISH, limits));
+        racers.add(() -> search(JobOrdering.Standard.EARLIEST_READY, MachineOrdering.Standard.LEAST_LOADED, limits));
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(racers.size(), (task) -> {
+            Thread thread = new Thread(task, "portfolio-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> finished = new ExecutorCompletionService<>(threads);
+        for (Runnable racer : racers) {
+            finished.submit(racer, null);
+        }
+        threads.shutdown();
+        try {
+            for (int i = 0; i < racers.size(); i++) {
+                try {
+                    finished.take().get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Error) {
+                        throw (Error) ex.getCause();
+                    }
+                    throw ex.getCause() instanceof RuntimeException
+                            ? (RuntimeException) ex.getCause() : new IllegalStateException(ex.getCause());
+                }
+            }
+        } finally {
+            token.cancel();
+            threads.shutdownNow();
+        }
+        synchronized (this) {
+            int makespan = best == null ? -1 : bound.get();
+            return new Outcome(best, makespan, provenBy != null ? provenBy : bestBy, provenBy != null, nodes.sum());
+        }
+    }
+
+    /**
+     * Race a ready-set search with the given orderings.
+     */
+    private void search(JobOrdering jobs, MachineOrdering order, SolveLimits limits) {
+        search(jobs + "/" + order, true, limits, () -> new ReadySetSchedule(graph, timeLimit, machines, jobs, order));
+    }
+
+    /**
+     * Search for a schedule that beats the shared bound, publish it and
+     * search again, until the search runs out, which proves the bound if
+     * the search is complete, or is cancelled. The failed configurations
+     * are kept from round to round, since they stay failed as the bound
+     * drops.
+     *
+     * @param name     what to call the search
+     * @param complete whether the search can reach every schedule
+     * @param limits   the deadline and cancellation token
+     * @param start    builds the configuration of a round
+     */
+    private void search(String name, boolean complete, SolveLimits limits, Supplier<InPlaceSchedule> start) {
+        TranspositionTable failed = new TranspositionTable(TABLE_CAPACITY);
+        Backtracker backtracker = new Backtracker(false, metrics);
+        while (!token.isCancelled()) {
+            InPlaceSchedule config = start.get();
+            config.shareBound(bound);
+            SolveResult<UndoableConfiguration> result = backtracker.solveInPlaceIterative(config, failed, limits);
+            nodes.add(result.getNodes());
+            if (result.getReason() == SolveResult.StopReason.SOLVED) {
+                InPlaceSchedule found = config.snapshot();
+                publish(found, found.getMakespan(), name);
+            } else {
+                if (result.getReason() == SolveResult.StopReason.EXHAUSTED && complete) {
+                    prove(name);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Improve the best heuristic schedule by local search, in rounds, each
+     * round publishing what it found, until the deadline or cancellation.
+     */
+    private void improve(long deadline) {
+        Schedule schedule = ListScheduler.best(graph, machines);
+        publish(schedule, schedule.getMakespan(), schedule.getHeuristic());
+        for (long seed = 0; !token.isCancelled() && System.nanoTime() < deadline; seed++) {
+            long millis = Math.min(ROUND_MILLIS, (deadline - System.nanoTime()) / 1_000_000);
+            if (millis <= 0) {
+                break;
+            }
+            schedule = LocalSearch.improve(schedule, millis, seed);
+            publish(schedule, schedule.getMakespan(), schedule.getHeuristic());
+        }
+    }
+
+    /**
+     * Offer a schedule; it becomes the best, and the bound to beat, if it
+     * beats the bound.
+     */
+    private synchronized void publish(JobSchedule schedule, int makespan, String by) {
+        if (makespan < bound.get() && provenBy == null) {
+            best = schedule;
+            bestBy = by;
+            bound.set(makespan);
+        }
+    }
+
+    /**
+     * Record that the bound is proven, and stop the race.
+     */
+    private synchronized void prove(String by) {
+        if (provenBy == null) {
+            provenBy = by;
+            token.cancel();
+        }
+    }
+}
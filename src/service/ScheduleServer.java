@@ -0,0 +1,355 @@
+package service;
+
+import backtracker.Backtracker;
+import backtracker.SearchMetrics;
+import backtracker.SolveLimits;
+import backtracker.SolveResult;
+import backtracker.TranspositionTable;
+import backtracker.UndoableConfiguration;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import scheduling.CompiledGraph;
+import scheduling.GraphLoader;
+import scheduling.IncrementalSchedule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small HTTP/1.1 server that schedules graphs sent to it, so other local
+ * services can use the scheduler without starting a JVM per query. Each
+ * request is handled on a virtual thread where the JDK has them, and on a
+ * pooled platform thread otherwise.<br>
+ * <br>
+ * <tt>POST /schedule?timeLimit=T&amp;machines=M[&amp;deadlineMillis=D]</tt>
+ * with a graph in the data/*.txt format as the body answers with the
+ * schedule, 400 if the request or graph is malformed, 500 if the search
+ * fails, or 504 if no answer was found before the deadline, after which
+ * the search is abandoned. Graphs are cached by the SHA-256 of their text,
+ * so asking about the same graph again skips parsing it. Jobs are numbered
+ * as by ScheduleMain, so the answer is the one its <tt>incremental</tt>
+ * mode gives.<br>
+ * <tt>GET /metrics</tt> answers with request counts and latencies.<br>
+ * <br>
+ * <tt>$ java service.ScheduleServer [port]</tt>
+ */
+public class ScheduleServer {
+    /*
+     * How long a search may run when the request does not say
+     */
+    private static final long DEFAULT_DEADLINE_MILLIS = 10_000;
+
+    /*
+     * Most graphs kept parsed
+     */
+    private static final int GRAPH_CACHE_SIZE = 64;
+
+    /*
+     * Most failed configurations each search remembers
+     */
+    private static final int TABLE_CAPACITY = 1 << 18;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /* Parsed graphs by content hash, least recently used first */
+    private final Map<String, CompiledGraph> graphs = new LinkedHashMap<String, CompiledGraph>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledGraph> eldest) {
+            return size() > GRAPH_CACHE_SIZE;
+        }
+    };
+
+    /* Request outcomes */
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder solved = new LongAdder();
+    private final LongAdder unsolvable = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+
+    /* Requests by latency: bucket b holds latencies under 2^b microseconds */
+    private final AtomicLongArray latency = new AtomicLongArray(40);
+
+    /**
+     * Create a server; it does not answer until started.
+     *
+     * @param port the port to listen on, or 0 for any free one
+     * @throws IOException if the port cannot be bound
+     */
+    public ScheduleServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/schedule", this::schedule);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    /**
+     * A virtual thread per task where the JDK has them (21 and later),
+     * found by reflection so the server still runs on older JDKs, with a
+     * pool of a platform thread per processor otherwise. The search keeps
+     * its stack on the heap, so neither needs a large thread stack.
+     */
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), (task) -> {
+                Thread thread = new Thread(task, "request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Start answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop answering requests and release the threads.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handle POST /schedule.
+     */
+    private void schedule(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                errors.increment();
+                respond(exchange, 405, "POST a graph\n");
+                return;
+            }
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            int timeLimit;
+            int machines;
+            long deadlineMillis;
+            try {
+                timeLimit = Integer.parseInt(query.getOrDefault("timeLimit", ""));
+                machines = Integer.parseInt(query.getOrDefault("machines", ""));
+                deadlineMillis = Long.parseLong(query.getOrDefault("deadlineMillis",
+                        String.valueOf(DEFAULT_DEADLINE_MILLIS)));
+            } catch (NumberFormatException ex) {
+                errors.increment();
+                respond(exchange, 400, "timeLimit and machines are required integers\n");
+                return;
+            }
+            long deadline = start + deadlineMillis * 1_000_000;
+
+            CompiledGraph graph;
+            try {
+                graph = graph(readBody(exchange.getRequestBody()));
+            } catch (IOException ex) {
+                errors.increment();
+                respond(exchange, 400, ex.getMessage() + "\n");
+                return;
+            }
+            if (graph.size() == 0) {
+                errors.increment();
+                respond(exchange, 400, "empty graph\n");
+                return;
+            }
+            if (machines < 1 || machines > graph.getMachineCount()) {
+                errors.increment();
+                respond(exchange, 400, "machines must be from 1 to " + graph.getMachineCount() + "\n");
+                return;
+            }
+
+            SearchMetrics metrics = new SearchMetrics(graph.size() + 1);
+            IncrementalSchedule schedule = new IncrementalSchedule(graph, timeLimit, machines);
+            SolveResult<UndoableConfiguration> result = new Backtracker(false, metrics).solveInPlaceIterative(schedule,
+                    new TranspositionTable(TABLE_CAPACITY), SolveLimits.NONE.withDeadline(deadline));
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.getResponseHeaders().set("X-Nodes-Expanded", String.valueOf(result.getNodes()));
+            exchange.getResponseHeaders().set("X-Stop-Reason", result.getReason().name());
+            switch (result.getReason()) {
+                case SOLVED:
+                    solved.increment();
+                    respond(exchange, 200, "Makespan: " + schedule.getMakespan() + schedule + "\n");
+                    break;
+                case EXHAUSTED:
+                    unsolvable.increment();
+                    respond(exchange, 200, "No solution!\n");
+                    break;
+                default:
+                    timeouts.increment();
+                    respond(exchange, 504, "No answer within " + deadlineMillis + " ms, after "
+                            + result.getNodes() + " configurations. Stopped at:"
+                            + result.getPartial().map(Object::toString).orElse("") + "\n");
+                    break;
+            }
+        } catch (RuntimeException ex) {
+            errors.increment();
+            respond(exchange, 500, "cannot schedule the graph: " + ex + "\n");
+        } finally {
+            record(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the compiled graph of a text, from the cache if it was seen before
+     */
+    private CompiledGraph graph(byte[] text) throws IOException {
+        String key = sha256(text);
+        synchronized (graphs) {
+            CompiledGraph graph = graphs.get(key);
+            if (graph != null) {
+                cacheHits.increment();
+                return graph;
+            }
+        }
+        // parse outside the lock; two requests may parse the same graph at once
+        CompiledGraph graph = GraphLoader.load(Channels.newChannel(new ByteArrayInputStream(text)));
+        synchronized (graphs) {
+            graphs.put(key, graph);
+        }
+        return graph;
+    }
+
+    private static String sha256(byte[] text) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(text)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // every JDK has SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Handle GET /metrics.
+     */
+    private void metrics(HttpExchange exchange) throws IOException {
+        long count = totalCount();
+        StringBuilder text = new StringBuilder();
+        text.append("requests ").append(requests.sum()).append('\n');
+        text.append("solved ").append(solved.sum()).append('\n');
+        text.append("no_solution ").append(unsolvable.sum()).append('\n');
+        text.append("timeouts ").append(timeouts.sum()).append('\n');
+        text.append("errors ").append(errors.sum()).append('\n');
+        text.append("graph_cache_hits ").append(cacheHits.sum()).append('\n');
+        text.append("latency_mean_ms ").append(String.format("%.3f", count == 0 ? 0 : totalMicros.sum() / 1e3 / count)).append('\n');
+        text.append("latency_p50_ms ").append(percentile(0.50)).append('\n');
+        text.append("latency_p90_ms ").append(percentile(0.90)).append('\n');
+        text.append("latency_p99_ms ").append(percentile(0.99)).append('\n');
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        respond(exchange, 200, text.toString());
+        exchange.close();
+    }
+
+    private void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        totalMicros.add(micros);
+        int bucket = Math.min(latency.length() - 1, 64 - Long.numberOfLeadingZeros(micros));
+        latency.incrementAndGet(bucket);
+    }
+
+    private long totalCount() {
+        long count = 0;
+        for (int b = 0; b < latency.length(); b++) {
+            count += latency.get(b);
+        }
+        return count;
+    }
+
+    /**
+     * @return an upper bound on the latency of a fraction of the requests, in milliseconds
+     */
+    private String percentile(double fraction) {
+        long count = totalCount();
+        if (count == 0) {
+            return "0";
+        }
+        long wanted = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int b = 0; b < latency.length(); b++) {
+            seen += latency.get(b);
+            if (seen >= wanted) {
+                return String.format("%.3f", (1L << b) / 1e3);
+            }
+        }
+        return "inf";
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> query(String raw) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Run a server until the JVM is stopped.
+     *
+     * @param args the port, 8080 by default
+     */
+    public static void main(String[] args) throws IOException {
+        ScheduleServer server = new ScheduleServer(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+        server.start();
+        System.out.println("Scheduling on port " + server.getPort());
+    }
+}
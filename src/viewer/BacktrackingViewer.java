@@ -24,17 +24,50 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+import backtracker.Configuration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * BacktrackingViewer javaFX Application class
  */
 public class BacktrackingViewer extends Application {
-    /** List of BacktrackingData to display */
+    /** List of BacktrackingData to display, for configurations that cannot be traced */
     private static List<BacktrackingData> dataList = new ArrayList<>();
 
+    /** Recorder of the steps of traceable configurations, if tracing */
+    private static TraceRecorder recorder;
+
+    /** The configurations being displayed */
+    private static TraceSource source;
+
+    /** In lazy mode only the configurations shown are rendered, see launchViewer(boolean) */
+    private static boolean lazy;
+
+    /** Number of configurations sampled to size the display in lazy mode */
+    private static final int SIZE_SAMPLE = 64;
+
+    /** Number of neighbors on each side of the current configuration kept rendered in lazy mode */
+    private static final int CACHE_RADIUS = 8;
+
+    /** Milliseconds the slider must rest before the display is rendered in lazy mode */
+    private static final int DEBOUNCE_MILLIS = 40;
+
+    /** Recent renders by configuration number, least recently used first */
+    private final Map<Integer, String> renderCache = new LinkedHashMap<Integer, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > 4 * CACHE_RADIUS + 2;
+        }
+    };
+
     /** Number (in terms of order added to the list) of the current Configuration being displayed */
     private int currentConfigNum;
 
@@ -64,7 +97,7 @@ public class BacktrackingViewer extends Application {
     @Override
     public void start(Stage stage) {
         // Show an error if nothing is in the list
-        if (dataList.size() == 0) {
+        if (source.size() == 0) {
             Label errorLabel = new Label(
                     "The list of BacktrackingData was empty.  " +
                             "Make sure you're adding to the list in Backtracker" +
@@ -93,19 +126,31 @@ public class BacktrackingViewer extends Application {
         Label isValidLabel = buildIsValidLabel();
         Label isGoalLabel = buildIsGoalLabel();
 
+        // in lazy mode, render only once the slider has come to rest
+        PauseTransition settle = new PauseTransition(Duration.millis(DEBOUNCE_MILLIS));
+        settle.setOnFinished((event) -> {
+            configDisplay.setText(render(currentConfigNum));
+            prefetch(currentConfigNum);
+        });
+
         // update the display when the slider is changed
         configSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
             currentConfigNum = newValue.intValue();
-            BacktrackingData current = dataList.get(currentConfigNum);
+            boolean valid = source.isValid(currentConfigNum);
+            boolean goal = source.isGoal(currentConfigNum);
 
             // update text and labels
-            configDisplay.setText(current.getConfig().toString());
+            if (lazy) {
+                settle.playFromStart();
+            } else {
+                configDisplay.setText(source.render(currentConfigNum));
+            }
             currentConfigLabel.setText(String.format(CURRENT_CONFIG_LABEL, currentConfigNum));
-            isValidLabel.setText(String.format(IS_VALID_LABEL, (current.isValid() ? "True" : "False")));
-            isGoalLabel.setText(String.format(IS_GOAL_LABEL, (current.isGoal() ? "True" : "False")));
+            isValidLabel.setText(String.format(IS_VALID_LABEL, (valid ? "True" : "False")));
+            isGoalLabel.setText(String.format(IS_GOAL_LABEL, (goal ? "True" : "False")));
 
             // set some colors for visual aid
-            if (current.isValid()) {
+            if (valid) {
                 configDisplay.setStyle("-fx-text-fill: black;");
                 isValidLabel.setStyle("-fx-text-fill: black;");
             } else {
@@ -142,6 +187,50 @@ public class BacktrackingViewer extends Application {
         stage.show();
     }
 
+    /**
+     * Render a configuration, through the cache.
+     *
+     * @param index which configuration
+     * @return its text
+     */
+    private String render(int index) {
+        String text = renderCache.get(index);
+        if (text == null) {
+            text = source.render(index);
+            renderCache.put(index, text);
+        }
+        return text;
+    }
+
+    /**
+     * Render the neighbors of a configuration ahead of time, so that
+     * stepping with the buttons is immediate.
+     *
+     * @param index the configuration displayed
+     */
+    private void prefetch(int index) {
+        int from = Math.max(0, index - CACHE_RADIUS);
+        int to = Math.min(source.size() - 1, index + CACHE_RADIUS);
+        for (int i = from; i <= to; i++) {
+            render(i);
+        }
+    }
+
+    /**
+     * The configurations whose size decides the size of the display: all
+     * of them, or in lazy mode an evenly spread sample.
+     *
+     * @return configuration numbers
+     */
+    private int[] sizingSample() {
+        int count = lazy ? Math.min(SIZE_SAMPLE, source.size()) : source.size();
+        int[] sample = new int[count];
+        for (int i = 0; i < count; i++) {
+            sample[i] = (int) ((long) i * source.size() / count);
+        }
+        return sample;
+    }
+
     /**
      * Build the TextArea used to display the current Configuration
      */
@@ -153,7 +242,7 @@ public class BacktrackingViewer extends Application {
         configDisplay.setPrefRowCount(DEFAULT_ROWS);
         configDisplay.setPrefColumnCount(Math.max(DEFAULT_COLS, computeMaxWidth()));
         configDisplay.setPrefRowCount(Math.max(DEFAULT_ROWS, computeMaxHeight()));
-        configDisplay.setText(dataList.get(0).getConfig().toString());
+        configDisplay.setText(lazy ? render(0) : source.render(0));
         return configDisplay;
     }
 
@@ -177,7 +266,7 @@ public class BacktrackingViewer extends Application {
     private Slider buildConfigSlider() {
         Slider configSlider = new Slider();
         configSlider.setMin(0);
-        configSlider.setMax(dataList.size()-1);
+        configSlider.setMax(source.size()-1);
         configSlider.setBlockIncrement(1);
         return configSlider;
     }
@@ -188,7 +277,7 @@ public class BacktrackingViewer extends Application {
     private Label buildTotalConfigLabel() {
         Label totalConfigLabel = new Label();
         totalConfigLabel.setFont(font);
-        totalConfigLabel.setText(String.format(TOTAL_CONFIG_LABEL, dataList.size() - 1));
+        totalConfigLabel.setText(String.format(TOTAL_CONFIG_LABEL, source.size() - 1));
         return totalConfigLabel;
     }
 
@@ -208,7 +297,7 @@ public class BacktrackingViewer extends Application {
     private Label buildIsValidLabel() {
         Label isValidLabel = new Label();
         isValidLabel.setFont(font);
-        isValidLabel.setText(String.format(IS_VALID_LABEL, (dataList.get(0).isValid() ? "True" : "False")));
+        isValidLabel.setText(String.format(IS_VALID_LABEL, (source.isValid(0) ? "True" : "False")));
         return isValidLabel;
     }
 
@@ -218,7 +307,7 @@ public class BacktrackingViewer extends Application {
     private Label buildIsGoalLabel() {
         Label isGoalLabel = new Label();
         isGoalLabel.setFont(font);
-        isGoalLabel.setText(String.format(IS_GOAL_LABEL, (dataList.get(0).isGoal() ? "True" : "False")));
+        isGoalLabel.setText(String.format(IS_GOAL_LABEL, (source.isGoal(0) ? "True" : "False")));
         return isGoalLabel;
     }
 
@@ -228,8 +317,8 @@ public class BacktrackingViewer extends Application {
      */
     private int computeMaxWidth() {
         int maxWidth = 0;
-        for (BacktrackingData data : dataList) {
-            String configString = data.getConfig().toString();
+        for (int index : sizingSample()) {
+            String configString = lazy ? render(index) : source.render(index);
             int count = 0;
             char c;
             for (int i = 0; i < configString.length(); i++) {
@@ -249,9 +338,9 @@ public class BacktrackingViewer extends Application {
      */
     private int computeMaxHeight() {
         int maxHeight = 0;
-        for (BacktrackingData data : dataList) {
+        for (int index : sizingSample()) {
             int height = 0;
-            String configString = data.getConfig().toString();
+            String configString = lazy ? render(index) : source.render(index);
             char c;
             for (int i = 0; i < configString.length(); i++) {
                 c = configString.charAt(i);
@@ -271,9 +360,83 @@ public class BacktrackingViewer extends Application {
     }
 
     /**
-     * Launch the viewer application
+     * Record steps of traceable configurations with a recorder from now on,
+     * instead of keeping the configurations in a list.
+     *
+     * @param traceRecorder where to record the steps
+     */
+    public static void startTrace(TraceRecorder traceRecorder) {
+        recorder = traceRecorder;
+    }
+
+    /**
+     * Add a step of the search to the trace if tracing, or else to the
+     * dataList.
+     *
+     * @param depth depth of the configuration, the root being 0
+     * @param config the configuration
+     * @param isValid if the configuration is valid
+     * @param isGoal if the configuration is the goal
+     */
+    public static void addBacktrackingData(int depth, Object config, boolean isValid, boolean isGoal) {
+        if (recorder != null && config instanceof Traceable) {
+            Traceable step = (Traceable) config;
+            recorder.record(depth, step.getLastJob(), step.getLastMachine(),
+                    step.getLastFinishTime(), isValid, isGoal);
+        } else if (config instanceof Configuration) {
+            dataList.add(new BacktrackingData((Configuration) config, isValid, isGoal));
+        }
+    }
+
+    /**
+     * Launch the viewer application, on the trace if one was recorded and
+     * on the dataList otherwise
      */
     public static void launchViewer() {
+        launchViewer(false);
+    }
+
+    /**
+     * Launch the viewer application, on the trace if one was recorded and
+     * on the dataList otherwise. In lazy mode the display is sized from a
+     * sample of the configurations, only the one selected and a few around
+     * it are rendered, and rendering waits for the slider to come to rest,
+     * so opening and browsing a huge trace takes constant time.
+     *
+     * @param lazyMode should the viewer render lazily
+     */
+    public static void launchViewer(boolean lazyMode) {
+        lazy = lazyMode;
+        if (recorder != null) {
+            try {
+                recorder.close();
+                source = new TraceReader(recorder.getDirectory());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        } else {
+            source = new TraceSource() {
+                @Override
+                public int size() {
+                    return dataList.size();
+                }
+
+                @Override
+                public String render(int index) {
+                    return dataList.get(index).getConfig().toString();
+                }
+
+                @Override
+                public boolean isValid(int index) {
+                    return dataList.get(index).isValid();
+                }
+
+                @Override
+                public boolean isGoal(int index) {
+                    return dataList.get(index).isGoal();
+                }
+            };
+        }
         Application.launch();
     }
 }
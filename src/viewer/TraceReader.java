@@ -0,0 +1,148 @@
+package viewer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Reads a trace written by a TraceRecorder. Segment files are mapped
+ * only when a record in them is first asked for, and a record is decoded
+ * only when it is asked for, so opening a trace takes the same time
+ * however long it is.
+ */
+public class TraceReader implements TraceSource {
+    private Path directory;
+    private String[] jobNames;
+    private int machines;
+    private int size;
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Open a closed trace.
+     *
+     * @param directory the directory the trace was recorded in
+     * @throws IOException if the trace files cannot be read
+     */
+    public TraceReader(Path directory) throws IOException {
+        this.directory = directory;
+        List<String> names = Files.readAllLines(directory.resolve(TraceRecorder.NAMES_FILE),
+                StandardCharsets.UTF_8);
+        this.jobNames = names.toArray(new String[0]);
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(directory.resolve(TraceRecorder.PROPERTIES_FILE))) {
+            properties.load(in);
+        }
+        long records = Long.parseLong(properties.getProperty("records"));
+        this.size = (int) Math.min(records, Integer.MAX_VALUE);
+        this.machines = Integer.parseInt(properties.getProperty("machines"));
+        this.segments = new MappedByteBuffer[(int) ((records + TraceRecorder.SEGMENT_RECORDS - 1)
+                / TraceRecorder.SEGMENT_RECORDS)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index which record
+     * @return the depth of the configuration
+     */
+    public int getDepth(int index) {
+        return segment(index).getInt(offset(index) + TraceRecorder.DEPTH);
+    }
+
+    /**
+     * @param index which record
+     * @return the job assigned last, or -1
+     */
+    public int getJob(int index) {
+        return segment(index).getInt(offset(index) + TraceRecorder.JOB);
+    }
+
+    /**
+     * @param index which record
+     * @return the machine the last job went to, or -1
+     */
+    public int getMachine(int index) {
+        return segment(index).getShort(offset(index) + TraceRecorder.MACHINE);
+    }
+
+    /**
+     * @param index which record
+     * @return the finish time of the last job
+     */
+    public int getFinishTime(int index) {
+        return segment(index).getInt(offset(index) + TraceRecorder.FINISH);
+    }
+
+    /**
+     * @param index which record
+     * @return the index of the record of the configuration this one came
+     * from, or -1 for the root
+     */
+    public long getParent(int index) {
+        return segment(index).getLong(offset(index) + TraceRecorder.PARENT);
+    }
+
+    @Override
+    public boolean isValid(int index) {
+        return (segment(index).get(offset(index) + TraceRecorder.FLAGS) & TraceRecorder.VALID) != 0;
+    }
+
+    @Override
+    public boolean isGoal(int index) {
+        return (segment(index).get(offset(index) + TraceRecorder.FLAGS) & TraceRecorder.GOAL) != 0;
+    }
+
+    /**
+     * Rebuild the partial schedule of a record by following its parents
+     * back to the root, in the same form JobSchedulingConfig prints.
+     *
+     * @param index which record
+     * @return the schedule at that step
+     */
+    @Override
+    public String render(int index) {
+        int depth = getDepth(index);
+        int[] jobs = new int[depth];
+        int[] machinesOf = new int[depth];
+        int[] finishes = new int[depth];
+        long record = index;
+        for (int d = depth - 1; d >= 0 && record >= 0; d--) {
+            int i = (int) record;
+            jobs[d] = getJob(i);
+            machinesOf[d] = getMachine(i);
+            finishes[d] = getFinishTime(i);
+            record = getParent(i);
+        }
+        StringBuilder string = new StringBuilder();
+        for (int m = 0; m < machines; m++) {
+            string.append("\nMachine " + m + ": ");
+            for (int d = 0; d < depth; d++) {
+                if (machinesOf[d] == m && jobs[d] >= 0) {
+                    string.append("(" + jobNames[jobs[d]] + "," + finishes[d] + ")");
+                }
+            }
+        }
+        return string.toString();
+    }
+
+    private int offset(int index) {
+        return (index % TraceRecorder.SEGMENT_RECORDS) * TraceRecorder.RECORD_SIZE;
+    }
+
+    private MappedByteBuffer segment(int index) {
+        int number = index / TraceRecorder.SEGMENT_RECORDS;
+        if (segments[number] == null) {
+            segments[number] = TraceRecorder.map(directory, number, FileChannel.MapMode.READ_ONLY);
+        }
+        return segments[number];
+    }
+}
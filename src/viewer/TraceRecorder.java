@@ -0,0 +1,173 @@
+package viewer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Records the steps of a search into memory-mapped segment files, so a
+ * trace of tens of millions of steps costs no Java heap. Each step is a
+ * fixed-size record of (depth, job, machine, finish time, valid, goal)
+ * plus the index of the step it was taken from, which lets a reader
+ * rebuild the whole partial schedule at any step. The job names are
+ * written beside the segments, and the record and machine counts when
+ * the trace is closed.
+ *
+ * @see TraceReader
+ */
+public class TraceRecorder implements Closeable {
+    /*
+     * Layout of a record
+     */
+    static final int RECORD_SIZE = 24;
+    static final int DEPTH = 0;
+    static final int JOB = 4;
+    static final int FINISH = 8;
+    static final int MACHINE = 12;
+    static final int FLAGS = 14;
+    static final int PARENT = 16;
+    static final byte VALID = 1;
+    static final byte GOAL = 2;
+
+    /*
+     * Records per segment file: 96 MiB each
+     */
+    static final int SEGMENT_RECORDS = 1 << 22;
+
+    /*
+     * Names of the files beside the segments
+     */
+    static final String NAMES_FILE = "names.txt";
+    static final String PROPERTIES_FILE = "trace.properties";
+
+    private Path directory;
+    private int machines;
+    private MappedByteBuffer segment;
+    private long count;
+
+    /* Index of the latest record at each depth, i.e. the current path */
+    private long[] path = new long[64];
+
+    /**
+     * Start a trace in a directory.
+     *
+     * @param directory an existing directory for the trace files
+     * @param jobNames the job names, by job number
+     * @param machines the number of machines
+     * @throws IOException if the names cannot be written
+     */
+    public TraceRecorder(Path directory, String[] jobNames, int machines) throws IOException {
+        this.directory = directory;
+        this.machines = machines;
+        Files.write(directory.resolve(NAMES_FILE), Arrays.asList(jobNames), StandardCharsets.UTF_8);
+        Files.deleteIfExists(directory.resolve(PROPERTIES_FILE));
+    }
+
+    /**
+     * @return the directory holding the trace
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of steps recorded
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Record one step of the search.
+     *
+     * @param depth depth of the configuration, the root being 0
+     * @param job the job assigned last, or -1
+     * @param machine the machine it went to, or -1
+     * @param finish its finish time
+     * @param valid was the configuration valid
+     * @param goal was the configuration a goal
+     */
+    public void record(int depth, int job, int machine, int finish, boolean valid, boolean goal) {
+        int offset = (int) (count % SEGMENT_RECORDS) * RECORD_SIZE;
+        if (offset == 0) {
+            segment = map(directory, count / SEGMENT_RECORDS, FileChannel.MapMode.READ_WRITE);
+        }
+        if (depth >= path.length) {
+            path = Arrays.copyOf(path, Math.max(depth + 1, path.length * 2));
+        }
+        segment.putInt(offset + DEPTH, depth);
+        segment.putInt(offset + JOB, job);
+        segment.putInt(offset + FINISH, finish);
+        segment.putShort(offset + MACHINE, (short) machine);
+        segment.put(offset + FLAGS, (byte) ((valid ? VALID : 0) | (goal ? GOAL : 0)));
+        segment.putLong(offset + PARENT, depth == 0 ? -1 : path[depth - 1]);
+        path[depth] = count;
+        count++;
+    }
+
+    /**
+     * Flush the last segment, cut its file down to the records in it, and
+     * write the counts, after which the trace can be read.
+     *
+     * @throws IOException if the last segment or the counts cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+            long last = (count - 1) / SEGMENT_RECORDS;
+            long records = count - last * SEGMENT_RECORDS;
+            Path file = segmentFile(directory, last);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(records * RECORD_SIZE);
+            }
+        }
+        Properties properties = new Properties();
+        properties.setProperty("records", Long.toString(count));
+        properties.setProperty("machines", Integer.toString(machines));
+        try (Writer out = Files.newBufferedWriter(directory.resolve(PROPERTIES_FILE))) {
+            properties.store(out, "backtracking trace");
+        }
+    }
+
+    /**
+     * Map one segment file of a trace.
+     *
+     * @param directory the trace directory
+     * @param number which segment
+     * @param mode READ_WRITE to create and write it, READ_ONLY to read it
+     * @return the mapped segment
+     */
+    static MappedByteBuffer map(Path directory, long number, FileChannel.MapMode mode) {
+        Path file = segmentFile(directory, number);
+        try (FileChannel channel = mode == FileChannel.MapMode.READ_WRITE
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = mode == FileChannel.MapMode.READ_WRITE
+                    ? (long) SEGMENT_RECORDS * RECORD_SIZE : channel.size();
+            return channel.map(mode, 0, size);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @param directory the trace directory
+     * @param number which segment
+     * @return the file of that segment
+     */
+    static Path segmentFile(Path directory, long number) {
+        return directory.resolve(String.format("segment-%05d.trace", number));
+    }
+}
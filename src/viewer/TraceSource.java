@@ -0,0 +1,27 @@
+package viewer;
+
+/**
+ * The configurations a BacktrackingViewer steps through, by index.
+ */
+public interface TraceSource {
+    /** @return the number of recorded configurations */
+    public int size();
+
+    /**
+     * @param index which configuration, in the order recorded
+     * @return the text to display for it
+     */
+    public String render(int index);
+
+    /**
+     * @param index which configuration, in the order recorded
+     * @return was it valid
+     */
+    public boolean isValid(int index);
+
+    /**
+     * @param index which configuration, in the order recorded
+     * @return was it a goal
+     */
+    public boolean isGoal(int index);
+}
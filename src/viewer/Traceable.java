@@ -0,0 +1,19 @@
+package viewer;
+
+/**
+ * A job scheduling configuration that can describe the step that led to
+ * it, so the step can be recorded in a trace by value instead of keeping
+ * the configuration itself.
+ *
+ * @see TraceRecorder
+ */
+public interface Traceable {
+    /** @return the number of the job assigned last, or -1 if none is */
+    public int getLastJob();
+
+    /** @return the machine the last job was assigned to, or -1 if none is */
+    public int getLastMachine();
+
+    /** @return the finish time of the last job, or 0 if none is assigned */
+    public int getLastFinishTime();
+}
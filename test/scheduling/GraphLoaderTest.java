@@ -0,0 +1,109 @@
+package scheduling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Checks that every way of loading a graph gives the same compiled graph:
+ * the Graph constructor, GraphLoader on text, and both of them on the
+ * binary form written by BinaryGraph. Also checks that trailing empty
+ * fields are skipped alike and that cyclic graphs are rejected.<br>
+ * <br>
+ * <tt>$ java scheduling.GraphLoaderTest</tt>, from the project directory
+ */
+public class GraphLoaderTest {
+	private static int failures;
+
+	/**
+	 * Compile a text or binary graph file through the Graph constructor,
+	 * without its printing.
+	 */
+	private static CompiledGraph viaGraph(String file) {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			return new Graph(file).compile();
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	private static void check(boolean condition, String what) {
+		if (!condition) {
+			failures++;
+			System.out.println("FAILED: " + what);
+		}
+	}
+
+	/**
+	 * Check that two compiled graphs have the same jobs, numbering, edges
+	 * and precomputed bounds.
+	 */
+	private static void checkSame(CompiledGraph expected, CompiledGraph actual, String what) {
+		check(Arrays.equals(expected.names, actual.names), what + ": names");
+		check(Arrays.deepEquals(expected.cost, actual.cost), what + ": costs");
+		check(Arrays.equals(expected.rank, actual.rank), what + ": ranks");
+		check(Arrays.equals(expected.outStart, actual.outStart)
+				&& Arrays.equals(expected.outAdj, actual.outAdj), what + ": out-neighbors");
+		check(Arrays.equals(expected.inStart, actual.inStart)
+				&& Arrays.equals(expected.inAdj, actual.inAdj), what + ": in-neighbors");
+		check(Arrays.equals(expected.machineClass, actual.machineClass), what + ": machine classes");
+		check(Arrays.equals(expected.minCost, actual.minCost), what + ": cheapest costs");
+		check(Arrays.equals(expected.tail, actual.tail), what + ": tails");
+	}
+
+	private static void sameEveryWay(String file) throws IOException {
+		CompiledGraph text = viaGraph(file);
+		checkSame(text, GraphLoader.load(file), file + " through GraphLoader");
+
+		Path binary = Files.createTempFile("graph", ".jsg");
+		try {
+			BinaryGraph.write(text, binary);
+			check(BinaryGraph.isBinary(binary), file + ": binary file recognized");
+			checkSame(text, BinaryGraph.read(binary), file + " through BinaryGraph.read");
+			checkSame(text, GraphLoader.load(binary.toString()), file + " binary through GraphLoader");
+			checkSame(text, viaGraph(binary.toString()), file + " binary through Graph");
+		} finally {
+			Files.delete(binary);
+		}
+	}
+
+	private static void trailingCommasSkipped() throws IOException {
+		Path plain = Files.createTempFile("graph", ".txt");
+		Path commas = Files.createTempFile("graph", ".txt");
+		try {
+			Files.write(plain, "A,2,2,3,B\nB,1,1,1\nC,1,2,3,B\n".getBytes(StandardCharsets.UTF_8));
+			Files.write(commas, "A,2,2,3,B,\nB,1,1,1,,\nC,1,2,3,B,\n".getBytes(StandardCharsets.UTF_8));
+			checkSame(viaGraph(plain.toString()), viaGraph(commas.toString()), "trailing commas through Graph");
+			checkSame(viaGraph(plain.toString()), GraphLoader.load(commas.toString()), "trailing commas through GraphLoader");
+		} finally {
+			Files.delete(plain);
+			Files.delete(commas);
+		}
+	}
+
+	private static void cyclicRejected(String file) {
+		try {
+			GraphLoader.load(file);
+			check(false, file + ": cyclic graph loaded");
+		} catch (IOException ex) {
+			check(ex.getMessage().contains("cyclic"), file + ": " + ex.getMessage());
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		for (int g = 1; g <= 4; g++) {
+			sameEveryWay("data/graph" + g + ".txt");
+		}
+		trailingCommasSkipped();
+		cyclicRejected("data/graph5.txt");
+		cyclicRejected("data/graph6.txt");
+		System.out.println(failures == 0 ? "GraphLoaderTest passed" : "GraphLoaderTest: " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,194 @@
+package scheduling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks the incremental mutations of a Graph against a graph rebuilt from
+ * scratch: after a run of random job, dependency and cost changes, every
+ * rank and tail must be what loading the same jobs from a file gives, the
+ * reported rank changes must be exactly the ones that happened, and a
+ * dependency that would close a cycle must leave the graph as it was.<br>
+ * <br>
+ * <tt>$ java scheduling.GraphMutationTest</tt>, from the project directory
+ */
+public class GraphMutationTest {
+	private static final int MUTATIONS = 2000;
+	private static final int CHECK_EVERY = 100;
+
+	private static int failures;
+
+	private static void check(boolean condition, String what) {
+		if (!condition) {
+			failures++;
+			System.out.println("FAILED: " + what);
+		}
+	}
+
+	private static Graph load(String file) {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			return new Graph(file);
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	private static Map<String, Integer> ranks(Graph graph) {
+		Map<String, Integer> ranks = new HashMap<>();
+		for (Job job : graph.getJobs().values()) {
+			ranks.put(job.getName(), job.getRank());
+		}
+		return ranks;
+	}
+
+	private static Map<String, Integer> tails(Graph graph) {
+		Map<String, Integer> tails = new HashMap<>();
+		for (Job job : graph.getJobs().values()) {
+			tails.put(job.getName(), job.getTail());
+		}
+		return tails;
+	}
+
+	private static Map<String, String> edges(Graph graph) {
+		Map<String, String> edges = new HashMap<>();
+		for (Job job : graph.getJobs().values()) {
+			List<String> outs = new ArrayList<>();
+			for (Job out : job.getOutNeighbors()) {
+				outs.add(out.getName());
+			}
+			Collections.sort(outs);
+			edges.put(job.getName(), outs.toString());
+		}
+		return edges;
+	}
+
+	private static int[] randomCosts(Random random, int machines) {
+		int[] costs = new int[machines];
+		for (int m = 0; m < machines; m++) {
+			costs[m] = 1 + random.nextInt(9);
+		}
+		return costs;
+	}
+
+	/**
+	 * Write the jobs in the text format and load them back, so the ranks
+	 * and tails come from a full topological sort.
+	 */
+	private static Graph rebuild(Graph graph) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (Job job : graph.getJobs().values()) {
+			text.append(job.getName());
+			for (int cost : job.getCosts()) {
+				text.append(',').append(cost);
+			}
+			for (Job out : job.getOutNeighbors()) {
+				text.append(',').append(out.getName());
+			}
+			text.append('\n');
+		}
+		Path file = Files.createTempFile("graph", ".txt");
+		try {
+			Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+			return load(file.toString());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void checkAgainstRebuilt(Graph graph, int step) throws IOException {
+		List<Job> order = graph.getTopologicalOrder();
+		check(order.size() == graph.getJobs().size(), "step " + step + ": order has every job");
+		for (int i = 1; i < order.size(); i++) {
+			check(order.get(i - 1).getRank() <= order.get(i).getRank(), "step " + step + ": order sorted by rank");
+		}
+		Graph rebuilt = rebuild(graph);
+		check(ranks(graph).equals(ranks(rebuilt)), "step " + step + ": ranks match a rebuilt graph");
+		check(tails(graph).equals(tails(rebuilt)), "step " + step + ": tails match a rebuilt graph");
+		check(edges(graph).equals(edges(rebuilt)), "step " + step + ": edges match a rebuilt graph");
+	}
+
+	public static void main(String[] args) throws IOException {
+		Graph graph = load("data/graph4.txt");
+		int machines = graph.getMachineClasses().length;
+		List<String> names = new ArrayList<>(graph.getJobs().keySet());
+		Random random = new Random(1);
+		int rejected = 0;
+
+		for (int step = 0; step < MUTATIONS; step++) {
+			String from = names.get(random.nextInt(names.size()));
+			String to = names.get(random.nextInt(names.size()));
+			Map<String, Integer> before = ranks(graph);
+			Map<String, String> edgesBefore = edges(graph);
+			Map<String, Integer> tailsBefore = tails(graph);
+			Set<Job> reported;
+			try {
+				switch (random.nextInt(5)) {
+				case 0:
+					String name = "added" + step;
+					reported = graph.addJob(name, randomCosts(random, machines));
+					names.add(name);
+					before.put(name, -1);
+					break;
+				case 1:
+					if (names.size() <= 5) {
+						continue;
+					}
+					reported = graph.removeJob(from);
+					names.remove(from);
+					before.remove(from);
+					break;
+				case 2:
+					reported = graph.removeDependency(from, to);
+					break;
+				case 3:
+					reported = graph.setCosts(from, randomCosts(random, machines));
+					break;
+				default:
+					reported = graph.addDependency(from, to);
+					break;
+				}
+			} catch (IllegalArgumentException ex) {
+				rejected++;
+				check(edges(graph).equals(edgesBefore) && ranks(graph).equals(before)
+						&& tails(graph).equals(tailsBefore), "step " + step + ": rejected change left the graph alone");
+				continue;
+			}
+
+			Set<String> changed = new HashSet<>();
+			for (Map.Entry<String, Integer> rank : ranks(graph).entrySet()) {
+				if (!rank.getValue().equals(before.get(rank.getKey()))) {
+					changed.add(rank.getKey());
+				}
+			}
+			Set<String> reportedNames = new HashSet<>();
+			for (Job job : reported) {
+				reportedNames.add(job.getName());
+			}
+			check(changed.equals(reportedNames), "step " + step + ": reported rank changes " + reportedNames
+					+ ", actual " + changed);
+
+			if (step % CHECK_EVERY == 0) {
+				checkAgainstRebuilt(graph, step);
+			}
+		}
+		checkAgainstRebuilt(graph, MUTATIONS);
+		check(rejected > 0, "some dependency closed a cycle and was rejected");
+
+		System.out.println(failures == 0 ? "GraphMutationTest passed" : "GraphMutationTest: " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,197 @@
+package scheduling;
+
+import backtracker.Backtracker;
+import backtracker.Configuration;
+import backtracker.ParallelBacktracker;
+import backtracker.SolveLimits;
+import backtracker.TranspositionTable;
+import service.PortfolioSolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that every way ScheduleMain can schedule a graph gives a valid
+ * schedule: each job runs once, on one machine, after the jobs it depends
+ * on and after the job before it on that machine, and the last job
+ * finishes within the time limit. The limit is twice the best heuristic
+ * makespan, so that every search finds a schedule quickly.<br>
+ * <br>
+ * <tt>$ java scheduling.ScheduleModesTest</tt>, from the project directory
+ */
+public class ScheduleModesTest {
+	private static final Pattern MACHINE = Pattern.compile("Machine (\\d+):(.*)");
+	private static final Pattern ITEM = Pattern.compile("\\(([^,()]+),(-?\\d+)\\)");
+	private static final long MILLIS = 2000;
+	private static final int TABLE_CAPACITY = 1 << 16;
+
+	private static int failures;
+
+	private static void check(boolean condition, String what) {
+		if (!condition) {
+			failures++;
+			System.out.println("FAILED: " + what);
+		}
+	}
+
+	private static Graph load(String file) {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			return new Graph(file);
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	/**
+	 * Check a schedule in the form JobSchedulingConfig prints, which every
+	 * kind of schedule shares.
+	 *
+	 * @param machineOf set to the machine each job is printed on
+	 * @param finish    set to the time each job is printed to finish
+	 * @return the makespan, or -1 if the schedule is not valid
+	 */
+	private static int checkPrinted(CompiledGraph graph, int machines, int limit, String printed, String what,
+									int[] machineOf, int[] finish) {
+		int n = graph.size();
+		Arrays.fill(machineOf, -1);
+		int makespan = 0;
+		int failed = failures;
+
+		for (String line : printed.trim().split("\n")) {
+			Matcher machine = MACHINE.matcher(line.trim());
+			if (!machine.matches()) {
+				check(false, what + ": cannot read " + line);
+				return -1;
+			}
+			int m = Integer.parseInt(machine.group(1));
+			check(m >= 0 && m < machines, what + ": machine " + m);
+			int free = 0;
+			Matcher item = ITEM.matcher(machine.group(2));
+			while (item.find()) {
+				int job = Arrays.asList(graph.names).indexOf(item.group(1));
+				check(job >= 0, what + ": unknown job " + item.group(1));
+				if (job < 0 || m < 0 || m >= machines) {
+					return -1;
+				}
+				check(machineOf[job] < 0, what + ": " + graph.names[job] + " runs twice");
+				machineOf[job] = m;
+				finish[job] = Integer.parseInt(item.group(2));
+				int start = finish[job] - graph.cost[job][m];
+				check(start >= free, what + ": " + graph.names[job] + " starts before machine " + m + " is free");
+				free = finish[job];
+				makespan = Math.max(makespan, finish[job]);
+			}
+		}
+
+		for (int job = 0; job < n; job++) {
+			if (machineOf[job] < 0) {
+				check(false, what + ": " + graph.names[job] + " never runs");
+				continue;
+			}
+			int start = finish[job] - graph.cost[job][machineOf[job]];
+			for (int e = graph.inStart[job]; e < graph.inStart[job + 1]; e++) {
+				int in = graph.inAdj[e];
+				check(machineOf[in] < 0 || finish[in] <= start,
+						what + ": " + graph.names[job] + " starts before " + graph.names[in] + " finishes");
+			}
+		}
+		check(makespan <= limit, what + ": makespan " + makespan + " over the limit " + limit);
+		return failures == failed ? makespan : -1;
+	}
+
+	/**
+	 * Check a schedule found in compiled form, and that it reports the
+	 * same assignment it prints.
+	 */
+	private static void checkSchedule(JobSchedule schedule, int limit, String what) {
+		CompiledGraph graph = schedule.getGraph();
+		int[] machineOf = new int[graph.size()];
+		int[] finish = new int[graph.size()];
+		int makespan = checkPrinted(graph, schedule.getMachineCount(), limit, schedule.toString(), what,
+				machineOf, finish);
+		if (makespan < 0) {
+			return;
+		}
+		check(schedule.getMakespan() == makespan, what + ": reports makespan " + schedule.getMakespan()
+				+ ", prints " + makespan);
+		for (int job = 0; job < graph.size(); job++) {
+			check(schedule.getMachine(job) == machineOf[job] && schedule.getFinishTime(job) == finish[job],
+					what + ": " + graph.names[job] + " reported where it is not printed");
+		}
+	}
+
+	private static void checkConfig(Optional<Configuration> solution, CompiledGraph graph, int machines,
+									int limit, String what) {
+		check(solution.isPresent(), what + ": no schedule");
+		if (solution.isPresent()) {
+			checkPrinted(graph, machines, limit, solution.get().toString(), what,
+					new int[graph.size()], new int[graph.size()]);
+		}
+	}
+
+	private static void checkModes(String file, int machines) throws InterruptedException {
+		Graph graph = load(file);
+		CompiledGraph compiled = graph.compile();
+		String where = file + " on " + machines + " machines, ";
+
+		Schedule best = ListScheduler.best(compiled, machines);
+		int limit = 2 * best.getMakespan();
+		for (ListScheduler.Heuristic heuristic : ListScheduler.Heuristic.values()) {
+			checkSchedule(ListScheduler.schedule(compiled, machines, heuristic), limit, where + heuristic);
+		}
+		checkSchedule(LocalSearch.improve(best, 200, 2, 0), best.getMakespan(), where + "improve");
+
+		Backtracker backtracker = new Backtracker(false);
+		checkConfig(backtracker.solve(new JobSchedulingConfig(graph, limit, machines)),
+				compiled, machines, limit, where + "sequential");
+		checkConfig(backtracker.solveIterative(new JobSchedulingConfig(graph, limit, machines)),
+				compiled, machines, limit, where + "iterative");
+		ParallelBacktracker parallel = new ParallelBacktracker(8, 2, null);
+		try {
+			checkConfig(parallel.solve(new JobSchedulingConfig(graph, limit, machines)),
+					compiled, machines, limit, where + "parallel");
+		} finally {
+			parallel.shutdown();
+		}
+		SolveLimits deadline = SolveLimits.NONE.withTimeout(MILLIS);
+		checkConfig(backtracker.solveOptimal(new JobSchedulingConfig(graph, limit, machines), limit + 1, deadline)
+				.getSolution(), compiled, machines, limit, where + "optimize");
+
+		IncrementalSchedule incremental = new IncrementalSchedule(compiled, limit, machines);
+		check(backtracker.solveInPlaceIterative(incremental, new TranspositionTable(TABLE_CAPACITY)),
+				where + "incremental: no schedule");
+		checkSchedule(incremental, limit, where + "incremental");
+
+		for (JobOrdering.Standard jobs : JobOrdering.Standard.values()) {
+			for (MachineOrdering.Standard order : MachineOrdering.Standard.values()) {
+				String what = where + "ready " + jobs + "/" + order;
+				ReadySetSchedule ready = new ReadySetSchedule(compiled, limit, machines, jobs, order);
+				check(backtracker.solveInPlaceIterative(ready, new TranspositionTable(TABLE_CAPACITY)),
+						what + ": no schedule");
+				checkSchedule(ready, limit, what);
+			}
+		}
+
+		PortfolioSolver.Outcome outcome = new PortfolioSolver(compiled, limit, machines, null).solve(MILLIS);
+		check(outcome.getSchedule() != null, where + "portfolio: no schedule");
+		if (outcome.getSchedule() != null) {
+			checkSchedule(outcome.getSchedule(), limit, where + "portfolio, won by " + outcome.getWinner());
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		for (int g = 1; g <= 4; g++) {
+			for (int machines = 1; machines <= 3; machines++) {
+				checkModes("data/graph" + g + ".txt", machines);
+			}
+		}
+		System.out.println(failures == 0 ? "ScheduleModesTest passed" : "ScheduleModesTest: " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}